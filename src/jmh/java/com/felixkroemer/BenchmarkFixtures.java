@@ -0,0 +1,105 @@
+package com.felixkroemer;
+
+import com.felixkroemer.analysis.ai.OAIService;
+import com.felixkroemer.analysis.naming.NamingCache;
+import com.felixkroemer.analysis.naming.NamingRuleEngine;
+import com.felixkroemer.analysis.naming.NamingService;
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.dagger.DaggerModule;
+import com.felixkroemer.metrics.Metrics;
+import com.lowagie.text.Document;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.hibernate.SessionFactory;
+
+/** Shared setup for the benchmarks. Nothing in here talks to the network or the user's files. */
+public final class BenchmarkFixtures {
+
+  private BenchmarkFixtures() {}
+
+  /**
+   * Configuration with benchmark friendly overrides: no stability wait, no LLM batching window
+   * and no naming cache, so the measured time is the work itself.
+   */
+  public static ConfigurationManager configuration() {
+    System.setProperty(ConfigurationManager.STABILITY_QUIET_PERIOD_MS, "0");
+    System.setProperty(ConfigurationManager.LLM_BATCHING_ENABLED, "false");
+    System.setProperty(ConfigurationManager.NAMING_CACHE_SIZE, "0");
+    System.setProperty(ConfigurationManager.OAI_KEY, "benchmark");
+    return new ConfigurationManager();
+  }
+
+  public static NamingService stubNamingService(ConfigurationManager configuration) {
+    var metrics = new Metrics();
+    return new NamingService(
+        new StubOAIService(configuration),
+        new NamingCache(configuration, metrics),
+        new NamingRuleEngine(configuration),
+        metrics);
+  }
+
+  public static SessionFactory sessionFactory(Path directory, int batchSize) {
+    return DaggerModule.buildSessionFactory(directory.resolve("benchmark.db"), batchSize);
+  }
+
+  public static void writePdf(Path path, int pages) throws IOException {
+    var document = new Document();
+    try (var out = Files.newOutputStream(path)) {
+      PdfWriter.getInstance(document, out);
+      document.open();
+      for (int page = 1; page <= pages; page++) {
+        document.add(new Paragraph("Invoice 2024-" + page + " for ACME Corporation"));
+        for (int line = 0; line < 40; line++) {
+          document.add(
+              new Paragraph("Line item " + line + ": consulting services, 8 hours, 960.00 EUR"));
+        }
+        document.newPage();
+      }
+      document.close();
+    }
+  }
+
+  /**
+   * Appends a PDF comment with a random id after the trailer so every copy hashes differently
+   * while staying readable.
+   */
+  public static void copyUnique(Path source, Path target) throws IOException {
+    Files.copy(source, target);
+    Files.writeString(target, "%" + UUID.randomUUID() + "\n", StandardOpenOption.APPEND);
+  }
+
+  public static void deleteRecursively(Path directory) throws IOException {
+    if (!Files.exists(directory)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /** Answers immediately with a unique name instead of calling the API. */
+  public static class StubOAIService extends OAIService {
+
+    private final AtomicInteger names = new AtomicInteger();
+
+    public StubOAIService(ConfigurationManager configurationManager) {
+      super(null, configurationManager, new Metrics());
+    }
+
+    @Override
+    public CompletableFuture<String> analyzeFileNameAsync(String analyzableContent) {
+      return CompletableFuture.completedFuture("Invoice_ACME_" + names.incrementAndGet());
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package com.felixkroemer.analysis;
+
+import com.felixkroemer.BenchmarkFixtures;
+import com.felixkroemer.analysis.result.AnalysisResult;
+import com.felixkroemer.metrics.Metrics;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Opens a PDF and extracts the text of its first page. The page count varies so that work which
+ * scales with the document size rather than with the first page shows up in the scores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PDFAnalyzerBenchmark {
+
+  @Param({"1", "20", "500"})
+  public int pages;
+
+  private Path directory;
+  private File pdf;
+  private PDFAnalyzer analyzer;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("pdf-benchmark");
+    var path = directory.resolve("document.pdf");
+    BenchmarkFixtures.writePdf(path, pages);
+    pdf = path.toFile();
+    var configuration = BenchmarkFixtures.configuration();
+    analyzer =
+        new PDFAnalyzer(
+            BenchmarkFixtures.stubNamingService(configuration), configuration, new Metrics());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    BenchmarkFixtures.deleteRecursively(directory);
+  }
+
+  @Benchmark
+  public AnalysisResult analyzeFirstPage() {
+    return analyzer.analyze(pdf);
+  }
+}
@@ -0,0 +1,39 @@
+package com.felixkroemer.file;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractFileExtensionBenchmark {
+
+  @Param({"scan.pdf", "Quarterly Report 2024 (final).v2.docx", ".hidden", "no_extension"})
+  public String fileName;
+
+  private Path path;
+
+  @Setup
+  public void setUp() {
+    path = Path.of("/tmp/drop-catcher/input").resolve(fileName);
+  }
+
+  @Benchmark
+  public String extractFileExtension() {
+    return FileHandler.extractFileExtension(path);
+  }
+}
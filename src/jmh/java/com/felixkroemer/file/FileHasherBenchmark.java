@@ -0,0 +1,55 @@
+package com.felixkroemer.file;
+
+import com.felixkroemer.BenchmarkFixtures;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileHasherBenchmark {
+
+  @Param({"65536", "1048576", "33554432"})
+  public int fileSize;
+
+  private final FileHasher fileHasher = new FileHasher();
+  private Path directory;
+  private Path file;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("hash-benchmark");
+    file = directory.resolve("data.bin");
+    var data = new byte[fileSize];
+    ThreadLocalRandom.current().nextBytes(data);
+    Files.write(file, data);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    BenchmarkFixtures.deleteRecursively(directory);
+  }
+
+  @Benchmark
+  public String sha256() {
+    return fileHasher.sha256(file);
+  }
+}
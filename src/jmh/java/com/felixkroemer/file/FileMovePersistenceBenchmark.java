@@ -0,0 +1,104 @@
+package com.felixkroemer.file;
+
+import com.felixkroemer.BenchmarkFixtures;
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.file.error.FileMoveStatus;
+import com.felixkroemer.metrics.Metrics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserts and then completes {@value #ENTITIES} file moves through the SQLite database, once with
+ * a session per entity the way the original code path did and once through {@link
+ * FileMoveWriter}. Scores are per entity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileMovePersistenceBenchmark {
+
+  private static final int ENTITIES = 100;
+
+  @Param({"1", "100"})
+  public int batchSize;
+
+  private Path directory;
+  private SessionFactory sessionFactory;
+  private FileMoveWriter fileMoveWriter;
+
+  @Setup
+  public void setUp() throws IOException {
+    System.setProperty(ConfigurationManager.DB_BATCH_SIZE, String.valueOf(batchSize));
+    directory = Files.createTempDirectory("persistence-benchmark");
+    sessionFactory = BenchmarkFixtures.sessionFactory(directory, batchSize);
+    fileMoveWriter =
+        new FileMoveWriter(BenchmarkFixtures.configuration(), () -> sessionFactory, new Metrics());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    fileMoveWriter.close();
+    sessionFactory.close();
+    BenchmarkFixtures.deleteRecursively(directory);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ENTITIES)
+  public void sessionPerEntity() {
+    for (int i = 0; i < ENTITIES; i++) {
+      var entity = pendingEntity(i);
+      sessionFactory.inTransaction(session -> session.persist(entity));
+      complete(entity);
+      sessionFactory.inTransaction(session -> session.merge(entity));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ENTITIES)
+  public void writeBehind() {
+    for (int i = 0; i < ENTITIES; i++) {
+      var entity = pendingEntity(i);
+      fileMoveWriter.insert(entity);
+      complete(entity);
+      fileMoveWriter.update(entity);
+    }
+    fileMoveWriter.flush();
+  }
+
+  private static FileMoveEntity pendingEntity(int i) {
+    return FileMoveEntity.builder()
+        .sourceDirectory("/tmp/drop-catcher/input")
+        .sourceFileName("scan_" + i + ".pdf")
+        .fileSize(1024L * i)
+        .status(FileMoveStatus.PENDING)
+        .createdAt(LocalDateTime.now())
+        .build();
+  }
+
+  private static void complete(FileMoveEntity entity) {
+    entity.setStatus(FileMoveStatus.SUCCEEDED);
+    entity.setTargetDirectory("/tmp/drop-catcher/output");
+    entity.setTargetFileName("Invoice_ACME");
+    entity.setMoveCompletedAt(LocalDateTime.now());
+  }
+}
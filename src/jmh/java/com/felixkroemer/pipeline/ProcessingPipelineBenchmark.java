@@ -0,0 +1,119 @@
+package com.felixkroemer.pipeline;
+
+import com.felixkroemer.BenchmarkFixtures;
+import com.felixkroemer.analysis.AnalyzerRegistry;
+import com.felixkroemer.analysis.MemoryBudget;
+import com.felixkroemer.analysis.MimeTypeSniffer;
+import com.felixkroemer.analysis.PDFAnalyzer;
+import com.felixkroemer.claim.FileClaimer;
+import com.felixkroemer.config.WatchRule;
+import com.felixkroemer.file.FileHandler;
+import com.felixkroemer.file.FileHasher;
+import com.felixkroemer.file.FileJob;
+import com.felixkroemer.file.FileMoveWriter;
+import com.felixkroemer.file.FileMover;
+import com.felixkroemer.file.StabilityTracker;
+import com.felixkroemer.metrics.Metrics;
+import com.felixkroemer.retry.RetryPolicy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs one PDF through the {@link ProcessingPipeline} end to end, the same stages a dropped file
+ * takes: stability check, claim, pending row, hashing, duplicate lookup, sniffing, first page
+ * extraction, the move and the final update. The LLM is stubbed out, every invocation gets a fresh
+ * copy with a unique hash.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessingPipelineBenchmark {
+
+  @Param({"1", "20"})
+  public int pages;
+
+  private Path directory;
+  private Path template;
+  private Path inputFile;
+  private WatchRule rule;
+  private SessionFactory sessionFactory;
+  private FileMoveWriter fileMoveWriter;
+  private ProcessingPipeline pipeline;
+  private int invocation;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("pipeline-benchmark");
+    var inputDir = Files.createDirectories(directory.resolve("input"));
+    var outputDir = Files.createDirectories(directory.resolve("output"));
+    template = directory.resolve("template.pdf");
+    BenchmarkFixtures.writePdf(template, pages);
+    rule = new WatchRule("benchmark", inputDir, outputDir, false, Set.of(), 0);
+
+    var configuration = BenchmarkFixtures.configuration();
+    var metrics = new Metrics();
+    sessionFactory = BenchmarkFixtures.sessionFactory(directory, 100);
+    fileMoveWriter = new FileMoveWriter(configuration, () -> sessionFactory, metrics);
+    var pdfAnalyzer =
+        new PDFAnalyzer(BenchmarkFixtures.stubNamingService(configuration), configuration, metrics);
+    var fileHandler =
+        new FileHandler(
+            new MimeTypeSniffer(),
+            new AnalyzerRegistry(
+                Map.of(MimeTypeSniffer.PDF, pdfAnalyzer), new MemoryBudget(configuration, metrics)),
+            () -> sessionFactory,
+            fileMoveWriter,
+            new StabilityTracker(configuration, metrics),
+            new FileHasher(),
+            new RetryPolicy(configuration),
+            new FileMover(),
+            metrics);
+    pipeline =
+        new ProcessingPipeline(
+            configuration, fileHandler, new FileClaimer(configuration, metrics), metrics);
+  }
+
+  @Setup(Level.Invocation)
+  public void prepareInput() throws IOException {
+    inputFile = rule.inputDir().resolve("scan_" + invocation++ + ".pdf");
+    BenchmarkFixtures.copyUnique(template, inputFile);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    pipeline.shutdown();
+    fileMoveWriter.close();
+    sessionFactory.close();
+    BenchmarkFixtures.deleteRecursively(directory);
+  }
+
+  @Benchmark
+  public FileJob process() {
+    return pipeline
+        .submit(inputFile, rule)
+        .orElseThrow(() -> new IllegalStateException("Pipeline rejected " + inputFile))
+        .getCompletion()
+        .join();
+  }
+}
@@ -1,15 +1,62 @@
 package com.felixkroemer;
 
+import static com.felixkroemer.config.ConfigurationManager.SHUTDOWN_TIMEOUT_MS;
+
 import com.felixkroemer.dagger.AppComponent;
 import com.felixkroemer.dagger.DaggerAppComponent;
+import com.felixkroemer.metrics.PrometheusExporter;
+import com.felixkroemer.retry.RetryScheduler;
 import com.felixkroemer.watch.Watch;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 public class DropCatcher {
 
+  private static final String CDS_TRAINING_PROPERTY = "dropcatcher.cdsTraining";
+
   private static final AppComponent appComponent = DaggerAppComponent.create();
 
   public static void main(String[] args) {
+    // Migrations and Hibernate bootstrap run while the watcher starts, early events wait for them
+    var persistence = appComponent.getPersistenceInitializer().start();
+    if (Boolean.getBoolean(CDS_TRAINING_PROPERTY)) {
+      // Load the classes of a normal startup so they end up in the CDS archive, then exit
+      appComponent.getWatch();
+      appComponent.getRetryScheduler();
+      persistence.join();
+      System.exit(0);
+    }
+    appComponent.getConfigurationManager().startWatching();
+    PrometheusExporter prometheusExporter = appComponent.getPrometheusExporter();
+    prometheusExporter.start();
+    // Returns files claimed before a restart before anything looks at the input directories
+    appComponent.getFileClaimer().start();
+    RetryScheduler retryScheduler = appComponent.getRetryScheduler();
+    retryScheduler.start();
+    appComponent.getIngestServer().start();
     Watch watch = appComponent.getWatch();
+    Runtime.getRuntime().addShutdownHook(new Thread(DropCatcher::shutdown, "shutdown"));
     watch.watch();
   }
+
+  /**
+   * Stops intake first, then gives files in flight a bounded time to complete and flushes their
+   * rows. Files that did not complete resume from their last checkpoint on the next start.
+   */
+  private static void shutdown() {
+    log.info("Shutdown signal received");
+    appComponent.getWatch().stop();
+    appComponent.getIngestServer().stop();
+    appComponent.getRetryScheduler().stop();
+    var pipeline = appComponent.getProcessingPipeline();
+    long timeoutMs = appComponent.getConfigurationManager().getInt(SHUTDOWN_TIMEOUT_MS);
+    if (pipeline.drain(timeoutMs)) {
+      log.info("All files in flight completed");
+    }
+    pipeline.shutdown();
+    appComponent.getFileClaimer().stop();
+    appComponent.getFileMoveWriter().close();
+    appComponent.getNamingCache().save();
+    appComponent.getPrometheusExporter().stop();
+  }
 }
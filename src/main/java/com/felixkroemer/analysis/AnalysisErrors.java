@@ -0,0 +1,24 @@
+package com.felixkroemer.analysis;
+
+import com.felixkroemer.analysis.ai.error.LLMUnavailableException;
+import com.felixkroemer.analysis.result.AnalysisFailure;
+import com.felixkroemer.analysis.result.AnalysisIncomplete;
+import com.felixkroemer.analysis.result.AnalysisResult;
+import com.felixkroemer.common.BaseException;
+import com.felixkroemer.common.ErrorCode;
+
+final class AnalysisErrors {
+
+  private AnalysisErrors() {}
+
+  static AnalysisResult toResult(Exception e) {
+    return switch (e) {
+      case LLMUnavailableException le -> new AnalysisIncomplete(le.getMessage(), true);
+      case BaseException be -> new AnalysisFailure(be.getMessage(), be.getCode(), be);
+      default -> {
+        var be = new BaseException(ErrorCode.ANALYSIS_FAILED, "Failed to analyze file: {}", e);
+        yield new AnalysisFailure(be.getMessage(), be.getCode(), be);
+      }
+    };
+  }
+}
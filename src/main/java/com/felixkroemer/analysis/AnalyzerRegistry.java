@@ -0,0 +1,66 @@
+package com.felixkroemer.analysis;
+
+import com.felixkroemer.analysis.result.AnalysisResult;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resolves analyzers by content type. Analyzers are contributed through Dagger map bindings keyed
+ * by either an exact MIME type or a wildcard like {@code image/*}. Every analyzer class gets its
+ * own semaphore sized by {@link FileAnalyzer#getConcurrency()}, and reserves the analyzer's
+ * memory estimate from the shared {@link MemoryBudget} while it extracts content. Both are
+ * released before naming, which may wait on the LLM and is only bounded by the pipeline's
+ * analyze concurrency.
+ */
+@Slf4j
+@Singleton
+public class AnalyzerRegistry {
+
+  private final Map<String, FileAnalyzer> analyzers;
+  private final Map<Class<?>, Semaphore> permits = new HashMap<>();
+  private final MemoryBudget memoryBudget;
+
+  @Inject
+  public AnalyzerRegistry(Map<String, FileAnalyzer> analyzers, MemoryBudget memoryBudget) {
+    this.analyzers = analyzers;
+    this.memoryBudget = memoryBudget;
+    analyzers
+        .values()
+        .forEach(
+            analyzer ->
+                permits.computeIfAbsent(
+                    analyzer.getClass(), c -> new Semaphore(analyzer.getConcurrency())));
+    log.info("Registered analyzers for {}", analyzers.keySet());
+  }
+
+  public Optional<FileAnalyzer> find(String mimeType) {
+    var analyzer = analyzers.get(mimeType);
+    if (analyzer == null) {
+      analyzer = analyzers.get(mimeType.substring(0, mimeType.indexOf('/') + 1) + "*");
+    }
+    return Optional.ofNullable(analyzer);
+  }
+
+  public AnalysisResult analyze(FileAnalyzer analyzer, File file) {
+    Extraction extraction;
+    var semaphore = permits.get(analyzer.getClass());
+    semaphore.acquireUninterruptibly();
+    try {
+      long reservation = memoryBudget.reserve(analyzer.estimateMemory(file.length()));
+      try {
+        extraction = analyzer.extract(file);
+      } finally {
+        memoryBudget.release(reservation);
+      }
+    } finally {
+      semaphore.release();
+    }
+    return extraction.name();
+  }
+}
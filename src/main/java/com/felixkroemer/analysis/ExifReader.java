@@ -0,0 +1,159 @@
+package com.felixkroemer.analysis;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+/**
+ * Reads the few EXIF tags used for naming photos from JPEG APP1 segments or TIFF headers. Only
+ * the segment headers up to the EXIF block are read, never the image data.
+ */
+final class ExifReader {
+
+  record Exif(Optional<LocalDateTime> capturedAt, Optional<String> cameraModel) {
+    static final Exif EMPTY = new Exif(Optional.empty(), Optional.empty());
+  }
+
+  private static final int TAG_MAKE = 0x010F;
+  private static final int TAG_MODEL = 0x0110;
+  private static final int TAG_DATE_TIME = 0x0132;
+  private static final int TAG_EXIF_IFD = 0x8769;
+  private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+
+  private static final int TYPE_ASCII = 2;
+  private static final int TYPE_LONG = 4;
+
+  private static final int MARKER_SOI = 0xFFD8;
+  private static final int MARKER_SOS = 0xDA;
+  private static final int MARKER_APP1 = 0xE1;
+  private static final int MAX_TIFF_HEADER_BYTES = 64 * 1024;
+
+  private static final DateTimeFormatter EXIF_DATE_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+  private ExifReader() {}
+
+  static Exif read(Path path) throws IOException {
+    try (var in = new DataInputStream(Files.newInputStream(path))) {
+      int magic = in.readUnsignedShort();
+      if (magic == MARKER_SOI) {
+        return readJpeg(in);
+      }
+      if (magic == ('I' << 8 | 'I') || magic == ('M' << 8 | 'M')) {
+        var head = new byte[MAX_TIFF_HEADER_BYTES];
+        head[0] = (byte) (magic >> 8);
+        head[1] = (byte) magic;
+        int read = 2 + in.readNBytes(head, 2, head.length - 2);
+        return parseTiff(ByteBuffer.wrap(head, 0, read).slice());
+      }
+      return Exif.EMPTY;
+    } catch (EOFException e) {
+      return Exif.EMPTY;
+    }
+  }
+
+  private static Exif readJpeg(DataInputStream in) throws IOException {
+    while (true) {
+      int marker = in.readUnsignedShort();
+      if ((marker & 0xFF00) != 0xFF00 || (marker & 0xFF) == MARKER_SOS) {
+        return Exif.EMPTY;
+      }
+      int length = in.readUnsignedShort() - 2;
+      if ((marker & 0xFF) != MARKER_APP1) {
+        in.skipNBytes(length);
+        continue;
+      }
+      var segment = in.readNBytes(length);
+      var header = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+      if (segment.length > header.length
+          && new String(segment, 0, 4, StandardCharsets.US_ASCII).equals("Exif")) {
+        return parseTiff(
+            ByteBuffer.wrap(segment, header.length, segment.length - header.length).slice());
+      }
+    }
+  }
+
+  private static Exif parseTiff(ByteBuffer tiff) {
+    try {
+      tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+      var tags = new Tags();
+      readIfd(tiff, tiff.getInt(4), tags);
+      if (tags.exifIfdOffset > 0) {
+        readIfd(tiff, tags.exifIfdOffset, tags);
+      }
+      var capturedAt = parseDate(tags.dateTimeOriginal).or(() -> parseDate(tags.dateTime));
+      var model = Optional.ofNullable(tags.model).filter(m -> !m.isBlank());
+      if (model.isPresent() && tags.make != null && !model.get().startsWith(tags.make)) {
+        model = Optional.of(tags.make + " " + model.get());
+      }
+      return new Exif(capturedAt, model);
+    } catch (IndexOutOfBoundsException e) {
+      return Exif.EMPTY;
+    }
+  }
+
+  private static void readIfd(ByteBuffer tiff, int offset, Tags tags) {
+    int count = Short.toUnsignedInt(tiff.getShort(offset));
+    for (int i = 0; i < count; i++) {
+      int entry = offset + 2 + i * 12;
+      int tag = Short.toUnsignedInt(tiff.getShort(entry));
+      int type = Short.toUnsignedInt(tiff.getShort(entry + 2));
+      int valueCount = tiff.getInt(entry + 4);
+      switch (tag) {
+        case TAG_MAKE -> tags.make = readAscii(tiff, entry, type, valueCount);
+        case TAG_MODEL -> tags.model = readAscii(tiff, entry, type, valueCount);
+        case TAG_DATE_TIME -> tags.dateTime = readAscii(tiff, entry, type, valueCount);
+        case TAG_DATE_TIME_ORIGINAL ->
+            tags.dateTimeOriginal = readAscii(tiff, entry, type, valueCount);
+        case TAG_EXIF_IFD -> {
+          if (type == TYPE_LONG) {
+            tags.exifIfdOffset = tiff.getInt(entry + 8);
+          }
+        }
+        default -> {}
+      }
+    }
+  }
+
+  private static String readAscii(ByteBuffer tiff, int entry, int type, int count) {
+    if (type != TYPE_ASCII || count <= 0) {
+      return null;
+    }
+    int valueOffset = count <= 4 ? entry + 8 : tiff.getInt(entry + 8);
+    var bytes = new byte[count];
+    tiff.get(valueOffset, bytes);
+    int end = 0;
+    while (end < bytes.length && bytes[end] != 0) {
+      end++;
+    }
+    return new String(bytes, 0, end, StandardCharsets.US_ASCII).strip();
+  }
+
+  private static Optional<LocalDateTime> parseDate(String value) {
+    if (value == null) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(LocalDateTime.parse(value, EXIF_DATE_FORMAT));
+    } catch (DateTimeParseException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static final class Tags {
+    private String make;
+    private String model;
+    private String dateTime;
+    private String dateTimeOriginal;
+    private int exifIfdOffset;
+  }
+}
@@ -0,0 +1,18 @@
+package com.felixkroemer.analysis;
+
+import com.felixkroemer.analysis.result.AnalysisResult;
+
+/**
+ * The content {@link FileAnalyzer#extract} read from a file, turned into the analysis result by
+ * {@link #name()}. Naming may wait on the LLM, so it runs after the file is closed and the
+ * analyzer's permit and the memory reserved for reading it are released.
+ */
+@FunctionalInterface
+public interface Extraction {
+  AnalysisResult name();
+
+  /** An extraction that needs no naming step, e.g. a failure or a name read from metadata. */
+  static Extraction of(AnalysisResult result) {
+    return () -> result;
+  }
+}
@@ -4,5 +4,23 @@ import com.felixkroemer.analysis.result.AnalysisResult;
 import java.io.File;
 
 public interface FileAnalyzer {
-  AnalysisResult analyze(File file);
+  /** Reads what naming needs from the file, the file is closed once this returns. */
+  Extraction extract(File file);
+
+  default AnalysisResult analyze(File file) {
+    return extract(file).name();
+  }
+
+  /** Maximum number of files this analyzer extracts content from at the same time. */
+  int getConcurrency();
+
+  /** Estimated heap needed while extracting from a file of the given size. */
+  default long estimateMemory(long fileSize) {
+    return fileSize;
+  }
+
+  /** Relative analysis cost per byte of content, used to let cheaper files go first. */
+  default double getCostWeight() {
+    return 1.0;
+  }
 }
@@ -0,0 +1,72 @@
+package com.felixkroemer.analysis;
+
+import com.felixkroemer.analysis.result.AnalysisIncomplete;
+import com.felixkroemer.analysis.result.AnalysisResult;
+import com.felixkroemer.analysis.result.ImageAnalysisSuccess;
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import javax.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+/** Names photos from their EXIF capture date and camera model without calling the LLM. */
+@Slf4j
+public class ImageAnalyzer implements FileAnalyzer {
+
+  private static final int CONCURRENCY = 16;
+  private static final DateTimeFormatter NAME_DATE_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+  @Inject
+  public ImageAnalyzer() {}
+
+  /** The name comes from the EXIF header, there is no separate naming step. */
+  @Override
+  public Extraction extract(File f) {
+    return Extraction.of(read(f));
+  }
+
+  private AnalysisResult read(File f) {
+    try {
+      var exif = ExifReader.read(f.toPath());
+      if (exif.capturedAt().isEmpty()) {
+        return new AnalysisIncomplete("Image has no EXIF capture date: " + f.getAbsolutePath());
+      }
+      var capturedAt = exif.capturedAt().get();
+      var name = new StringBuilder("Photo_").append(NAME_DATE_FORMAT.format(capturedAt));
+      exif.cameraModel()
+          .map(model -> model.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", ""))
+          .filter(model -> !model.isEmpty())
+          .ifPresent(model -> name.append('_').append(model));
+      var analyzedFileName = name.toString();
+      log.info("Analyzed file name for file {}: {}", f.getAbsolutePath(), analyzedFileName);
+      return new ImageAnalysisSuccess(
+          f.getAbsolutePath(),
+          f.getName(),
+          f.length(),
+          LocalDateTime.now(),
+          capturedAt,
+          exif.cameraModel().orElse(null),
+          analyzedFileName);
+    } catch (Exception e) {
+      return AnalysisErrors.toResult(e);
+    }
+  }
+
+  /** An EXIF segment is at most 64 KB, the image data is never read. */
+  @Override
+  public long estimateMemory(long fileSize) {
+    return 64 * 1024;
+  }
+
+  /** Only the EXIF header is read, so the cost does not grow with the file size. */
+  @Override
+  public double getCostWeight() {
+    return 0;
+  }
+
+  @Override
+  public int getConcurrency() {
+    return CONCURRENCY;
+  }
+}
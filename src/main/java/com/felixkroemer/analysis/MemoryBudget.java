@@ -0,0 +1,120 @@
+package com.felixkroemer.analysis;
+
+import static com.felixkroemer.config.ConfigurationManager.ANALYSIS_MEMORY_BUDGET_MB;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.metrics.Histogram;
+import com.felixkroemer.metrics.Metrics;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Global heap budget for file analysis. Analyzers reserve their estimated footprint before they
+ * start, reservations that do not fit wait in arrival order until enough was released. A
+ * reservation that fits goes ahead of waiting ones, so a large file does not hold up small files
+ * of other analyzers, unless the oldest waiter has already waited {@value #MAX_OVERTAKEN_MS}ms.
+ * A single reservation larger than the budget is capped to the budget, so the file is analyzed
+ * alone.
+ */
+@Slf4j
+@Singleton
+public class MemoryBudget {
+
+  private static final long BYTES_PER_MB = 1024 * 1024;
+  private static final long MAX_OVERTAKEN_MS = 1000;
+
+  private final long limitBytes;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+  private long reservedBytes;
+
+  private final Histogram reservationWait;
+
+  /** Compared by identity, two waiters may ask for the same amount at the same time. */
+  private static final class Waiter {
+    private final long bytes;
+    private final long sinceNanos;
+
+    private Waiter(long bytes, long sinceNanos) {
+      this.bytes = bytes;
+      this.sinceNanos = sinceNanos;
+    }
+  }
+
+  @Inject
+  public MemoryBudget(ConfigurationManager configurationManager, Metrics metrics) {
+    long configuredMb = configurationManager.getInt(ANALYSIS_MEMORY_BUDGET_MB);
+    this.limitBytes =
+        configuredMb > 0 ? configuredMb * BYTES_PER_MB : Runtime.getRuntime().maxMemory() / 2;
+    log.info("Analysis memory budget is {} MB", limitBytes / BYTES_PER_MB);
+    this.reservationWait =
+        metrics.histogram(
+            "dropcatcher_memory_reservation_wait", "Time a file waited for its memory reservation");
+    metrics.gauge(
+        "dropcatcher_memory_reserved_bytes",
+        "Heap reserved by files being analyzed",
+        this::getReservedBytes);
+  }
+
+  /**
+   * Blocks until {@code bytes} fit into the budget.
+   *
+   * @return the reserved amount, to be passed to {@link #release(long)}
+   */
+  public long reserve(long bytes) {
+    long reservation = Math.min(bytes, limitBytes);
+    long waitStart = System.nanoTime();
+    var waiter = new Waiter(reservation, waitStart);
+    lock.lock();
+    try {
+      waiters.addLast(waiter);
+      while (!mayReserve(waiter)) {
+        released.awaitUninterruptibly();
+      }
+      waiters.remove(waiter);
+      reservedBytes += reservation;
+      // The next waiter may fit as well
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    reservationWait.recordSince(waitStart);
+    return reservation;
+  }
+
+  private boolean mayReserve(Waiter waiter) {
+    if (reservedBytes + waiter.bytes > limitBytes) {
+      return false;
+    }
+    var oldest = waiters.peekFirst();
+    return oldest == waiter
+        || System.nanoTime() - oldest.sinceNanos
+            < TimeUnit.MILLISECONDS.toNanos(MAX_OVERTAKEN_MS);
+  }
+
+  public void release(long reservation) {
+    lock.lock();
+    try {
+      reservedBytes -= reservation;
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getReservedBytes() {
+    lock.lock();
+    try {
+      return reservedBytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package com.felixkroemer.analysis;
+
+import com.felixkroemer.file.error.FileHandlingFailedException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import javax.inject.Inject;
+
+/** Determines the content type of a file from its first few KB instead of its extension. */
+public class MimeTypeSniffer {
+
+  public static final String PDF = "application/pdf";
+  public static final String TEXT = "text/plain";
+  public static final String JPEG = "image/jpeg";
+  public static final String PNG = "image/png";
+  public static final String GIF = "image/gif";
+  public static final String TIFF = "image/tiff";
+  public static final String WEBP = "image/webp";
+  public static final String HEIC = "image/heic";
+  public static final String DOCX =
+      "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+  public static final String XLSX =
+      "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+  public static final String PPTX =
+      "application/vnd.openxmlformats-officedocument.presentationml.presentation";
+  public static final String ZIP = "application/zip";
+  public static final String EMPTY = "application/x-empty";
+  public static final String UNKNOWN = "application/octet-stream";
+
+  private static final int HEAD_SIZE = 8 * 1024;
+  private static final int PDF_HEADER_SEARCH_LIMIT = 1024;
+
+  @Inject
+  public MimeTypeSniffer() {}
+
+  public String sniff(Path path, String extensionHint) {
+    byte[] head = readHead(path);
+    if (head.length == 0) {
+      return EMPTY;
+    }
+    if (indexOf(head, ascii("%PDF-"), PDF_HEADER_SEARCH_LIMIT) >= 0) {
+      return PDF;
+    }
+    if (startsWith(head, 0, new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF})) {
+      return JPEG;
+    }
+    if (startsWith(head, 0, new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})) {
+      return PNG;
+    }
+    if (startsWith(head, 0, ascii("GIF8"))) {
+      return GIF;
+    }
+    if (startsWith(head, 0, new byte[] {'I', 'I', 42, 0})
+        || startsWith(head, 0, new byte[] {'M', 'M', 0, 42})) {
+      return TIFF;
+    }
+    if (startsWith(head, 0, ascii("RIFF")) && startsWith(head, 8, ascii("WEBP"))) {
+      return WEBP;
+    }
+    if (startsWith(head, 4, ascii("ftyp"))
+        && (startsWith(head, 8, ascii("heic"))
+            || startsWith(head, 8, ascii("heix"))
+            || startsWith(head, 8, ascii("mif1")))) {
+      return HEIC;
+    }
+    if (startsWith(head, 0, new byte[] {'P', 'K', 3, 4})) {
+      return sniffZip(head, extensionHint);
+    }
+    if (looksLikeText(head)) {
+      return TEXT;
+    }
+    return UNKNOWN;
+  }
+
+  private static String sniffZip(byte[] head, String extensionHint) {
+    var byExtension =
+        switch (extensionHint.toLowerCase()) {
+          case "docx" -> DOCX;
+          case "xlsx" -> XLSX;
+          case "pptx" -> PPTX;
+          default -> null;
+        };
+    if (byExtension != null) {
+      return byExtension;
+    }
+    if (indexOf(head, ascii("word/"), head.length) >= 0) {
+      return DOCX;
+    }
+    if (indexOf(head, ascii("xl/"), head.length) >= 0) {
+      return XLSX;
+    }
+    if (indexOf(head, ascii("ppt/"), head.length) >= 0) {
+      return PPTX;
+    }
+    return ZIP;
+  }
+
+  private static boolean looksLikeText(byte[] head) {
+    for (byte b : head) {
+      if (b == 0) {
+        return false;
+      }
+    }
+    // A head cut off at HEAD_SIZE may end in the middle of a multi-byte sequence, which decodes
+    // as an underflow with the partial sequence left over instead of an error.
+    boolean truncated = head.length == HEAD_SIZE;
+    var result =
+        StandardCharsets.UTF_8
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT)
+            .decode(ByteBuffer.wrap(head), CharBuffer.allocate(head.length), !truncated);
+    return !result.isError();
+  }
+
+  private static byte[] readHead(Path path) {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var buffer = ByteBuffer.allocate(HEAD_SIZE);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) == -1) {
+          break;
+        }
+      }
+      return Arrays.copyOf(buffer.array(), buffer.position());
+    } catch (IOException e) {
+      throw new FileHandlingFailedException("Failed to read file header: {}", path, e);
+    }
+  }
+
+  private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+    if (data.length < offset + prefix.length) {
+      return false;
+    }
+    return Arrays.equals(data, offset, offset + prefix.length, prefix, 0, prefix.length);
+  }
+
+  private static int indexOf(byte[] data, byte[] pattern, int limit) {
+    int end = Math.min(data.length, limit) - pattern.length;
+    for (int i = 0; i <= end; i++) {
+      if (startsWith(data, i, pattern)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,149 @@
+package com.felixkroemer.analysis;
+
+import static com.felixkroemer.config.ConfigurationManager.MAX_EXTRACTED_CHARS;
+
+import com.felixkroemer.analysis.naming.NamingService;
+import com.felixkroemer.analysis.result.AnalysisIncomplete;
+import com.felixkroemer.analysis.result.AnalysisResult;
+import com.felixkroemer.analysis.result.OfficeAnalysisSuccess;
+import com.felixkroemer.config.ConfigurationManager;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.zip.ZipFile;
+import javax.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Names Office Open XML documents. Only the zip central directory, the core properties and the
+ * beginning of the main content part are read.
+ */
+@Slf4j
+public class OfficeAnalyzer implements FileAnalyzer {
+
+  private static final int CONCURRENCY = 4;
+  private static final int RAW_CHARS_PER_TEXT_CHAR = 8;
+
+  private static final String CORE_PROPERTIES = "docProps/core.xml";
+  private static final List<String> CONTENT_PARTS =
+      List.of("word/document.xml", "ppt/slides/slide1.xml", "xl/sharedStrings.xml");
+
+  private static final Pattern TITLE = Pattern.compile("<dc:title>([^<]*)</dc:title>");
+  private static final Pattern CREATED =
+      Pattern.compile("<dcterms:created[^>]*>([^<]*)</dcterms:created>");
+  private static final Pattern TAG = Pattern.compile("<[^>]*>");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private final NamingService namingService;
+  private final int maxExtractedChars;
+
+  @Inject
+  public OfficeAnalyzer(NamingService namingService, ConfigurationManager configurationManager) {
+    this.namingService = namingService;
+    this.maxExtractedChars = configurationManager.getInt(MAX_EXTRACTED_CHARS);
+  }
+
+  @Override
+  public Extraction extract(File f) {
+    var content = new StringBuilder();
+    String contentType;
+    try (var zip = new ZipFile(f)) {
+      readPart(zip, CORE_PROPERTIES, maxExtractedChars)
+          .ifPresent(
+              properties -> {
+                find(TITLE, properties)
+                    .ifPresent(t -> content.append("Title: ").append(t).append('\n'));
+                find(CREATED, properties)
+                    .ifPresent(c -> content.append("Created: ").append(c).append('\n'));
+              });
+      for (String part : CONTENT_PARTS) {
+        var raw = readPart(zip, part, maxExtractedChars * RAW_CHARS_PER_TEXT_CHAR);
+        if (raw.isPresent()) {
+          var text = WHITESPACE.matcher(TAG.matcher(raw.get()).replaceAll(" ")).replaceAll(" ");
+          content.append(text, 0, Math.min(text.length(), maxExtractedChars));
+          break;
+        }
+      }
+      contentType = contentType(zip);
+    } catch (Exception e) {
+      return Extraction.of(AnalysisErrors.toResult(e));
+    }
+    if (content.toString().isBlank()) {
+      return Extraction.of(
+          new AnalysisIncomplete("Document contains no text to analyze: " + f.getAbsolutePath()));
+    }
+    return () -> name(f, content.toString().strip(), contentType);
+  }
+
+  private AnalysisResult name(File f, String content, String contentType) {
+    try {
+      var generatedName = namingService.analyzeFileName(content);
+      log.info(
+          "Analyzed file name for file {}: {} ({})",
+          f.getAbsolutePath(),
+          generatedName.name(),
+          generatedName.source());
+      return new OfficeAnalysisSuccess(
+          f.getAbsolutePath(),
+          f.getName(),
+          f.length(),
+          LocalDateTime.now(),
+          contentType,
+          generatedName.name(),
+          generatedName.source());
+    } catch (Exception e) {
+      return AnalysisErrors.toResult(e);
+    }
+  }
+
+  /** Parts are read up to a fixed length, the rest of the archive stays on disk. */
+  @Override
+  public long estimateMemory(long fileSize) {
+    return 4L * maxExtractedChars * RAW_CHARS_PER_TEXT_CHAR;
+  }
+
+  @Override
+  public int getConcurrency() {
+    return CONCURRENCY;
+  }
+
+  private static Optional<String> readPart(ZipFile zip, String name, int maxChars)
+      throws IOException {
+    var entry = zip.getEntry(name);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    try (var reader = new InputStreamReader(zip.getInputStream(entry), StandardCharsets.UTF_8)) {
+      var buffer = new char[maxChars];
+      int read = 0;
+      while (read < buffer.length) {
+        int n = reader.read(buffer, read, buffer.length - read);
+        if (n == -1) {
+          break;
+        }
+        read += n;
+      }
+      return Optional.of(new String(buffer, 0, read));
+    }
+  }
+
+  private static Optional<String> find(Pattern pattern, String value) {
+    var matcher = pattern.matcher(value);
+    return matcher.find() ? Optional.of(matcher.group(1).strip()) : Optional.empty();
+  }
+
+  private static String contentType(ZipFile zip) {
+    if (zip.getEntry("word/document.xml") != null) {
+      return MimeTypeSniffer.DOCX;
+    }
+    if (zip.getEntry("xl/workbook.xml") != null) {
+      return MimeTypeSniffer.XLSX;
+    }
+    return MimeTypeSniffer.PPTX;
+  }
+}
@@ -1,60 +1,118 @@
 package com.felixkroemer.analysis;
 
-import com.felixkroemer.analysis.ai.OAIService;
-import com.felixkroemer.analysis.result.AnalysisFailure;
+import com.felixkroemer.analysis.naming.NamingService;
 import com.felixkroemer.analysis.result.AnalysisIncomplete;
 import com.felixkroemer.analysis.result.AnalysisResult;
 import com.felixkroemer.analysis.result.PDFAnalysisSuccess;
-import com.felixkroemer.common.BaseException;
-import com.felixkroemer.common.ErrorCode;
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.metrics.Counter;
+import com.felixkroemer.metrics.Histogram;
+import com.felixkroemer.metrics.Metrics;
 import com.lowagie.text.pdf.PdfReader;
-import com.lowagie.text.pdf.parser.PdfTextExtractor;
+import com.lowagie.text.pdf.RandomAccessFileOrArray;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Inject;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.Optional;
+
+import static com.felixkroemer.config.ConfigurationManager.MAX_EXTRACTED_CHARS;
 
 @Slf4j
 public class PDFAnalyzer implements FileAnalyzer {
 
-  private final OAIService oaiService;
+  private static final int CONCURRENCY = 4;
+  private static final long PARSER_OVERHEAD_BYTES = 4 * 1024 * 1024;
+  private static final long SAMPLED_PAGE_BYTES = 512 * 1024;
+
+  private final NamingService namingService;
+  private final int maxExtractedChars;
+  private final Histogram extractionDuration;
+  private final Counter pagesExtracted;
 
   @Inject
-  public PDFAnalyzer(OAIService oaiService) {
-    this.oaiService = oaiService;
+  public PDFAnalyzer(
+      NamingService namingService, ConfigurationManager configurationManager, Metrics metrics) {
+    this.namingService = namingService;
+    this.maxExtractedChars = configurationManager.getInt(MAX_EXTRACTED_CHARS);
+    this.extractionDuration =
+        metrics.histogram(
+            "dropcatcher_pdf_extraction_duration", "Time spent opening a PDF and extracting text");
+    this.pagesExtracted =
+        metrics.counter(
+            "dropcatcher_pdf_pages_extracted_total", "PDF pages text was extracted from");
   }
 
-  public AnalysisResult analyze(File f) {
-    try (var is = new FileInputStream(f)) {
-      PdfReader reader = new PdfReader(is);
-      var analyzableContent = getContentForNameAnalysis(reader);
-      if (analyzableContent.isEmpty()) {
-        return new AnalysisIncomplete("PDF contains no text to analyze: " + f.getAbsolutePath());
+  @Override
+  public Extraction extract(File f) {
+    PdfReader reader = null;
+    PDFTextSampler.Sample sample;
+    int pageCount;
+    try {
+      long extractionStart = System.nanoTime();
+      reader = openPartial(f);
+      sample = PDFTextSampler.sample(reader, maxExtractedChars);
+      pageCount = reader.getNumberOfPages();
+      extractionDuration.recordSince(extractionStart);
+      pagesExtracted.add(sample.pagesRead());
+    } catch (Exception e) {
+      return Extraction.of(AnalysisErrors.toResult(e));
+    } finally {
+      if (reader != null) {
+        reader.close();
       }
-      var analyzedFileName = oaiService.analyzeFileName(analyzableContent.get());
-      log.info("Analyzed file name for file {}: {}", f.getAbsolutePath(), analyzedFileName);
+    }
+    if (sample.content().isBlank()) {
+      return Extraction.of(
+          new AnalysisIncomplete("PDF contains no text to analyze: " + f.getAbsolutePath()));
+    }
+    return () -> name(f, sample.content(), pageCount);
+  }
+
+  private AnalysisResult name(File f, String content, int pageCount) {
+    try {
+      var generatedName = namingService.analyzeFileName(content);
+      log.info(
+          "Analyzed file name for file {}: {} ({})",
+          f.getAbsolutePath(),
+          generatedName.name(),
+          generatedName.source());
       return new PDFAnalysisSuccess(
           f.getAbsolutePath(),
           f.getName(),
-          f.getTotalSpace(),
+          f.length(),
           LocalDateTime.now(),
-          reader.getNumberOfPages(),
-          analyzedFileName);
-    } catch (BaseException e) {
-      return new AnalysisFailure(e.getMessage(), e.getCode(), e);
+          pageCount,
+          generatedName.name(),
+          generatedName.source());
     } catch (Exception e) {
-      var be = new BaseException(ErrorCode.ANALYSIS_FAILED, "Failed to analyze file: {}", e);
-      return new AnalysisFailure(be.getMessage(), be.getCode(), be);
+      return AnalysisErrors.toResult(e);
     }
   }
 
-  private Optional<String> getContentForNameAnalysis(PdfReader reader) throws IOException {
-    PdfTextExtractor pdfTextExtractor = new PdfTextExtractor(reader);
-    var text = pdfTextExtractor.getTextFromPage(1);
-    return Optional.of(text).filter(s -> !s.isBlank());
+  /**
+   * The partial reader keeps most objects on disk and only decodes the pages that are sampled, so
+   * the footprint is bounded by the page budget of {@link PDFTextSampler} rather than the file size.
+   * The reader is closed before the file is named.
+   */
+  @Override
+  public long estimateMemory(long fileSize) {
+    return PARSER_OVERHEAD_BYTES
+        + PDFTextSampler.MAX_SAMPLED_PAGES * SAMPLED_PAGE_BYTES
+        + 4L * maxExtractedChars;
+  }
+
+  @Override
+  public int getConcurrency() {
+    return CONCURRENCY;
+  }
+
+  /**
+   * Opens the document in partial mode: only the trailer and cross-reference table are parsed up
+   * front, objects such as page contents are read from disk on demand.
+   */
+  private static PdfReader openPartial(File f) throws IOException {
+    return new PdfReader(new RandomAccessFileOrArray(f.getAbsolutePath(), false, true), null);
   }
 }
@@ -0,0 +1,91 @@
+package com.felixkroemer.analysis;
+
+import com.lowagie.text.pdf.PdfDate;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.parser.PdfTextExtractor;
+import java.io.IOException;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Collects the text a PDF is named from. The document info dictionary is read first, pages are
+ * then extracted one at a time until enough meaningful text has been found, so that cover sheets
+ * and blank pages are skipped without extracting the whole document.
+ */
+class PDFTextSampler {
+
+  /** Letters and digits after which further pages are not extracted. */
+  static final int MIN_MEANINGFUL_CHARS = 200;
+
+  /** Bounds the work spent on documents without a text layer, e.g. scans. */
+  static final int MAX_SAMPLED_PAGES = 10;
+
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+
+  record Sample(String content, int pagesRead) {}
+
+  private PDFTextSampler() {}
+
+  static Sample sample(PdfReader reader, int maxChars) throws IOException {
+    var content = new StringBuilder();
+    appendMetadata(reader.getInfo(), content);
+    int metadataLength = content.length();
+
+    var extractor = new PdfTextExtractor(reader);
+    int pageCount = reader.getNumberOfPages();
+    int meaningfulChars = 0;
+    int page = 0;
+    while (page < Math.min(pageCount, MAX_SAMPLED_PAGES)
+        && meaningfulChars < MIN_MEANINGFUL_CHARS
+        && content.length() < maxChars + metadataLength) {
+      page++;
+      var text = extractor.getTextFromPage(page).strip();
+      reader.releasePage(page);
+      int pageMeaningfulChars = countMeaningfulChars(text);
+      if (pageMeaningfulChars == 0) {
+        continue;
+      }
+      meaningfulChars += pageMeaningfulChars;
+      if (content.length() > metadataLength) {
+        content.append('\n');
+      }
+      content.append(text);
+    }
+    content.setLength(Math.min(content.length(), maxChars + metadataLength));
+    return new Sample(content.toString(), page);
+  }
+
+  private static void appendMetadata(Map<String, String> info, StringBuilder content) {
+    Optional.ofNullable(info.get("Title"))
+        .filter(t -> !t.isBlank())
+        .ifPresent(t -> content.append("Title: ").append(t.strip()).append('\n'));
+    Optional.ofNullable(info.get("Subject"))
+        .filter(s -> !s.isBlank())
+        .ifPresent(s -> content.append("Subject: ").append(s.strip()).append('\n'));
+    Optional.ofNullable(info.get("CreationDate"))
+        .flatMap(PDFTextSampler::decodeDate)
+        .ifPresent(d -> content.append("Created: ").append(d).append('\n'));
+  }
+
+  private static Optional<String> decodeDate(String pdfDate) {
+    Calendar calendar = PdfDate.decode(pdfDate);
+    if (calendar == null) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        DATE_FORMAT.format(calendar.toInstant().atZone(ZoneId.systemDefault()).toLocalDate()));
+  }
+
+  private static int countMeaningfulChars(String text) {
+    int count = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (Character.isLetterOrDigit(text.charAt(i))) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
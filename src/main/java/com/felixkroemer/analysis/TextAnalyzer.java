@@ -0,0 +1,99 @@
+package com.felixkroemer.analysis;
+
+import static com.felixkroemer.config.ConfigurationManager.MAX_EXTRACTED_CHARS;
+
+import com.felixkroemer.analysis.naming.NamingService;
+import com.felixkroemer.analysis.result.AnalysisIncomplete;
+import com.felixkroemer.analysis.result.AnalysisResult;
+import com.felixkroemer.analysis.result.TextAnalysisSuccess;
+import com.felixkroemer.config.ConfigurationManager;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import javax.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class TextAnalyzer implements FileAnalyzer {
+
+  private static final int CONCURRENCY = 8;
+
+  private final NamingService namingService;
+  private final int maxExtractedChars;
+
+  @Inject
+  public TextAnalyzer(NamingService namingService, ConfigurationManager configurationManager) {
+    this.namingService = namingService;
+    this.maxExtractedChars = configurationManager.getInt(MAX_EXTRACTED_CHARS);
+  }
+
+  @Override
+  public Extraction extract(File f) {
+    String text;
+    try {
+      text = readHead(f);
+    } catch (Exception e) {
+      return Extraction.of(AnalysisErrors.toResult(e));
+    }
+    if (text.isBlank()) {
+      return Extraction.of(new AnalysisIncomplete("Text file is blank: " + f.getAbsolutePath()));
+    }
+    return () -> name(f, text);
+  }
+
+  private AnalysisResult name(File f, String text) {
+    try {
+      var generatedName = namingService.analyzeFileName(text);
+      log.info(
+          "Analyzed file name for file {}: {} ({})",
+          f.getAbsolutePath(),
+          generatedName.name(),
+          generatedName.source());
+      return new TextAnalysisSuccess(
+          f.getAbsolutePath(),
+          f.getName(),
+          f.length(),
+          LocalDateTime.now(),
+          MimeTypeSniffer.TEXT,
+          generatedName.name(),
+          generatedName.source());
+    } catch (Exception e) {
+      return AnalysisErrors.toResult(e);
+    }
+  }
+
+  /** Only the first characters are decoded, independent of the file size. */
+  @Override
+  public long estimateMemory(long fileSize) {
+    return 4L * maxExtractedChars;
+  }
+
+  @Override
+  public int getConcurrency() {
+    return CONCURRENCY;
+  }
+
+  private String readHead(File f) throws IOException {
+    var decoder =
+        StandardCharsets.UTF_8
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    try (var reader = new InputStreamReader(Files.newInputStream(f.toPath()), decoder)) {
+      var buffer = new char[maxExtractedChars];
+      int read = 0;
+      while (read < buffer.length) {
+        int n = reader.read(buffer, read, buffer.length - read);
+        if (n == -1) {
+          break;
+        }
+        read += n;
+      }
+      return new String(buffer, 0, read);
+    }
+  }
+}
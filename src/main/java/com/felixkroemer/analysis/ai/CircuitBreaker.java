@@ -0,0 +1,64 @@
+package com.felixkroemer.analysis.ai;
+
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class CircuitBreaker {
+
+  private enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN,
+  }
+
+  private final int failureThreshold;
+  private final long openDurationNanos;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAtNanos;
+
+  public CircuitBreaker(int failureThreshold, long openDurationMs) {
+    this.failureThreshold = failureThreshold;
+    this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+  }
+
+  public synchronized boolean tryAcquire() {
+    return switch (state) {
+      case CLOSED -> true;
+      case HALF_OPEN -> false;
+      case OPEN -> {
+        if (System.nanoTime() - openedAtNanos < openDurationNanos) {
+          yield false;
+        }
+        log.info("Circuit breaker half-open, letting a trial request through");
+        state = State.HALF_OPEN;
+        yield true;
+      }
+    };
+  }
+
+  public synchronized void onSuccess() {
+    if (state != State.CLOSED) {
+      log.info("Circuit breaker closed");
+    }
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+  }
+
+  public synchronized void onFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      if (state != State.OPEN) {
+        log.warn("Circuit breaker opened after {} consecutive failures", consecutiveFailures);
+      }
+      state = State.OPEN;
+      openedAtNanos = System.nanoTime();
+    }
+  }
+
+  public synchronized boolean isOpen() {
+    return state == State.OPEN;
+  }
+}
@@ -0,0 +1,132 @@
+package com.felixkroemer.analysis.ai;
+
+import com.felixkroemer.analysis.ai.error.LLMUnavailableException;
+import com.openai.errors.OpenAIIoException;
+import com.openai.errors.OpenAIServiceException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs asynchronous LLM requests behind a rate limiter, a limit on concurrently outstanding
+ * requests, retries with full jitter for transient failures, and a circuit breaker that fails
+ * fast with {@link LLMUnavailableException} while the endpoint is known to be down.
+ */
+@Slf4j
+public class GuardedRequestExecutor {
+
+  private final TokenBucketRateLimiter rateLimiter;
+  private final CircuitBreaker circuitBreaker;
+  private final Semaphore inFlight;
+  private final ExecutorService waitExecutor;
+  private final long timeoutMs;
+  private final int maxAttempts;
+  private final long retryBaseDelayMs;
+
+  public GuardedRequestExecutor(
+      TokenBucketRateLimiter rateLimiter,
+      CircuitBreaker circuitBreaker,
+      int maxInFlight,
+      long timeoutMs,
+      int maxAttempts,
+      long retryBaseDelayMs) {
+    this.rateLimiter = rateLimiter;
+    this.circuitBreaker = circuitBreaker;
+    this.inFlight = new Semaphore(maxInFlight);
+    this.waitExecutor =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("llm-wait-", 0).factory());
+    this.timeoutMs = timeoutMs;
+    this.maxAttempts = maxAttempts;
+    this.retryBaseDelayMs = retryBaseDelayMs;
+  }
+
+  public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> request) {
+    var result = new CompletableFuture<T>();
+    attempt(request, 1, result);
+    return result;
+  }
+
+  private <T> void attempt(
+      Supplier<CompletableFuture<T>> request, int attempt, CompletableFuture<T> result) {
+    if (!circuitBreaker.tryAcquire()) {
+      result.completeExceptionally(
+          new LLMUnavailableException("LLM circuit breaker is open, request rejected", null));
+      return;
+    }
+
+    CompletableFuture.runAsync(inFlight::acquireUninterruptibly, waitExecutor)
+        .thenCompose(
+            ignored -> CompletableFuture.runAsync(() -> {}, delayed(rateLimiter.reserve())))
+        .thenCompose(ignored -> send(request))
+        .whenComplete(
+            (value, e) -> {
+              if (e == null) {
+                circuitBreaker.onSuccess();
+                result.complete(value);
+                return;
+              }
+              var cause = unwrap(e);
+              if (!isRetryable(cause)) {
+                circuitBreaker.onSuccess();
+                result.completeExceptionally(cause);
+                return;
+              }
+              circuitBreaker.onFailure();
+              if (circuitBreaker.isOpen()) {
+                result.completeExceptionally(
+                    new LLMUnavailableException("LLM endpoint unavailable", cause));
+              } else if (attempt >= maxAttempts) {
+                result.completeExceptionally(
+                    new LLMUnavailableException(
+                        "LLM request failed after " + attempt + " attempts", cause));
+              } else {
+                long backoffMs = retryBaseDelayMs << Math.min(attempt - 1, 16);
+                long delayMs = ThreadLocalRandom.current().nextLong(backoffMs + 1);
+                log.warn(
+                    "LLM request attempt {} failed, retrying in {}ms: {}",
+                    attempt,
+                    delayMs,
+                    cause.toString());
+                CompletableFuture.runAsync(
+                    () -> attempt(request, attempt + 1, result),
+                    CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS));
+              }
+            });
+  }
+
+  private <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> request) {
+    CompletableFuture<T> call;
+    try {
+      call = request.get();
+    } catch (Exception e) {
+      call = CompletableFuture.failedFuture(e);
+    }
+    // A call that timed out may still be running, so it keeps its permit until it completes
+    call.whenComplete((value, e) -> inFlight.release());
+    return call.copy().orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+  }
+
+  private static Executor delayed(long delayNanos) {
+    return CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private static boolean isRetryable(Throwable e) {
+    if (e instanceof OpenAIServiceException serviceException) {
+      int status = serviceException.statusCode();
+      return status == 408 || status == 429 || status >= 500;
+    }
+    return e instanceof OpenAIIoException || e instanceof TimeoutException;
+  }
+
+  private static Throwable unwrap(Throwable e) {
+    return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+  }
+}
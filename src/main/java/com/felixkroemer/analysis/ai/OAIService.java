@@ -1,42 +1,241 @@
 package com.felixkroemer.analysis.ai;
 
+import static com.felixkroemer.config.ConfigurationManager.LLM_BATCHING_ENABLED;
+import static com.felixkroemer.config.ConfigurationManager.LLM_BATCH_MAX_SIZE;
+import static com.felixkroemer.config.ConfigurationManager.LLM_BATCH_WINDOW_MS;
+import static com.felixkroemer.config.ConfigurationManager.LLM_BURST;
+import static com.felixkroemer.config.ConfigurationManager.LLM_CIRCUIT_FAILURE_THRESHOLD;
+import static com.felixkroemer.config.ConfigurationManager.LLM_CIRCUIT_OPEN_MS;
+import static com.felixkroemer.config.ConfigurationManager.LLM_MAX_ATTEMPTS;
+import static com.felixkroemer.config.ConfigurationManager.LLM_MAX_IN_FLIGHT;
 import static com.felixkroemer.config.ConfigurationManager.LLM_MODEL;
+import static com.felixkroemer.config.ConfigurationManager.LLM_PROMPT_TOKEN_BUDGET;
+import static com.felixkroemer.config.ConfigurationManager.LLM_REQUESTS_PER_SECOND;
+import static com.felixkroemer.config.ConfigurationManager.LLM_RETRY_BASE_DELAY_MS;
+import static com.felixkroemer.config.ConfigurationManager.LLM_TIMEOUT_MS;
 
 import com.felixkroemer.config.ConfigurationManager;
-import com.openai.client.OpenAIClient;
+import com.felixkroemer.metrics.Counter;
+import com.felixkroemer.metrics.Histogram;
+import com.felixkroemer.metrics.Metrics;
+import com.openai.client.OpenAIClientAsync;
 import com.openai.models.chat.completions.ChatCompletionCreateParams;
+import com.openai.models.chat.completions.StructuredChatCompletion;
+import com.openai.models.completions.CompletionUsage;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
+@Singleton
 public class OAIService {
 
-  private final OpenAIClient openAIClient;
+  private final OpenAIClientAsync openAIClient;
   private final ConfigurationManager configurationManager;
+  private final GuardedRequestExecutor requestExecutor;
+  private final RequestBatcher<String, String> batcher;
+  private final PromptCompactor promptCompactor;
+
+  private final Histogram requestDuration;
+  private final Counter requests;
+  private final Counter requestFailures;
+  private final Counter promptTokens;
+  private final Counter completionTokens;
+  private final Counter compactedTokens;
 
   @Inject
-  public OAIService(OpenAIClient oaiClient, ConfigurationManager configurationManager) {
+  public OAIService(
+      OpenAIClientAsync oaiClient, ConfigurationManager configurationManager, Metrics metrics) {
     this.openAIClient = oaiClient;
     this.configurationManager = configurationManager;
+    this.requestExecutor =
+        new GuardedRequestExecutor(
+            new TokenBucketRateLimiter(
+                configurationManager.getDouble(LLM_REQUESTS_PER_SECOND),
+                configurationManager.getInt(LLM_BURST)),
+            new CircuitBreaker(
+                configurationManager.getInt(LLM_CIRCUIT_FAILURE_THRESHOLD),
+                configurationManager.getInt(LLM_CIRCUIT_OPEN_MS)),
+            configurationManager.getInt(LLM_MAX_IN_FLIGHT),
+            configurationManager.getInt(LLM_TIMEOUT_MS),
+            configurationManager.getInt(LLM_MAX_ATTEMPTS),
+            configurationManager.getInt(LLM_RETRY_BASE_DELAY_MS));
+    this.batcher =
+        configurationManager.getBoolean(LLM_BATCHING_ENABLED)
+            ? new RequestBatcher<>(
+                this::analyzeFileNamesAsync,
+                Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("llm-batcher").daemon(true).factory()),
+                configurationManager.getInt(LLM_BATCH_MAX_SIZE),
+                configurationManager.getInt(LLM_BATCH_WINDOW_MS))
+            : null;
+    int tokenBudget = configurationManager.getInt(LLM_PROMPT_TOKEN_BUDGET);
+    this.promptCompactor = tokenBudget > 0 ? new PromptCompactor(tokenBudget) : null;
+    this.requestDuration =
+        metrics.histogram("dropcatcher_llm_request_duration", "Latency of a single LLM request");
+    this.requests = metrics.counter("dropcatcher_llm_requests_total", "LLM requests sent");
+    this.requestFailures =
+        metrics.counter("dropcatcher_llm_request_failures_total", "LLM requests that failed");
+    this.promptTokens =
+        metrics.counter("dropcatcher_llm_prompt_tokens_total", "Prompt tokens used");
+    this.completionTokens =
+        metrics.counter("dropcatcher_llm_completion_tokens_total", "Completion tokens used");
+    this.compactedTokens =
+        metrics.counter(
+            "dropcatcher_llm_compacted_tokens_total",
+            "Estimated prompt tokens saved by compaction");
   }
 
   public String analyzeFileName(String analyzableContent) {
-    var result =
-        this.openAIClient
-            .chat()
-            .completions()
-            .create(
-                ChatCompletionCreateParams.builder()
-                    .addUserMessage(getFileNameAnalysisSystemPrompt())
-                    .addUserMessage(analyzableContent)
-                    .model(configurationManager.getString(LLM_MODEL))
-                    .build());
-    return result
-        .choices()
-        .getFirst()
-        .message()
-        .content()
-        .orElseThrow(() -> new RuntimeException("Could not analyze file name"));
+    try {
+      return analyzeFileNameAsync(analyzableContent).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  public CompletableFuture<String> analyzeFileNameAsync(String analyzableContent) {
+    var content = compact(analyzableContent);
+    if (batcher == null) {
+      return requestFileName(content);
+    }
+    return batcher.submit(content);
+  }
+
+  private String compact(String analyzableContent) {
+    if (promptCompactor == null) {
+      return analyzableContent;
+    }
+    var compacted = promptCompactor.compact(analyzableContent);
+    if (compacted.isBlank()) {
+      return analyzableContent;
+    }
+    compactedTokens.add(
+        PromptCompactor.estimateTokens(analyzableContent)
+            - PromptCompactor.estimateTokens(compacted));
+    return compacted;
+  }
+
+  private CompletableFuture<List<String>> analyzeFileNamesAsync(List<String> analyzableContents) {
+    if (analyzableContents.size() == 1) {
+      return requestFileName(analyzableContents.getFirst()).thenApply(List::of);
+    }
+    return requestFileNameBatch(analyzableContents)
+        .thenCompose(
+            fileNames -> {
+              if (fileNames.size() == analyzableContents.size()) {
+                log.info("Analyzed {} file names in one request", fileNames.size());
+                return CompletableFuture.completedFuture(fileNames);
+              }
+              log.warn(
+                  "Batch naming returned {} names for {} documents, using single requests",
+                  fileNames.size(),
+                  analyzableContents.size());
+              return requestFileNames(analyzableContents);
+            })
+        .exceptionallyCompose(
+            e -> {
+              // Models without structured output support reject the batch request
+              log.warn(
+                  "Batch naming of {} documents failed, using single requests",
+                  analyzableContents.size(),
+                  e);
+              return requestFileNames(analyzableContents);
+            });
+  }
+
+  private CompletableFuture<List<String>> requestFileNames(List<String> analyzableContents) {
+    var singleRequests = analyzableContents.stream().map(this::requestFileName).toList();
+    return CompletableFuture.allOf(singleRequests.toArray(CompletableFuture[]::new))
+        .thenApply(ignored -> singleRequests.stream().map(CompletableFuture::join).toList());
+  }
+
+  private CompletableFuture<String> requestFileName(String analyzableContent) {
+    var params =
+        ChatCompletionCreateParams.builder()
+            .addUserMessage(getFileNameAnalysisSystemPrompt())
+            .addUserMessage(analyzableContent)
+            .model(configurationManager.getString(LLM_MODEL))
+            .build();
+    return requestExecutor
+        .execute(instrumented(() -> this.openAIClient.chat().completions().create(params)))
+        .thenApply(
+            result -> {
+              result.usage().ifPresent(this::recordUsage);
+              return result;
+            })
+        .thenApply(
+            result ->
+                result
+                    .choices()
+                    .getFirst()
+                    .message()
+                    .content()
+                    .orElseThrow(() -> new RuntimeException("Could not analyze file name")));
+  }
+
+  private CompletableFuture<List<String>> requestFileNameBatch(List<String> analyzableContents) {
+    var params =
+        ChatCompletionCreateParams.builder()
+            .addUserMessage(getFileNameBatchAnalysisSystemPrompt())
+            .addUserMessage(formatBatch(analyzableContents))
+            .model(configurationManager.getString(LLM_MODEL))
+            .responseFormat(FileNameBatch.class)
+            .build();
+    // The async client has no structured create, the raw completion is parsed the same way
+    return requestExecutor
+        .execute(
+            instrumented(() -> this.openAIClient.chat().completions().create(params.rawParams())))
+        .thenApply(
+            result -> {
+              result.usage().ifPresent(this::recordUsage);
+              return new StructuredChatCompletion<>(FileNameBatch.class, result);
+            })
+        .thenApply(
+            result ->
+                result.choices().stream()
+                    .flatMap(choice -> choice.message().content().stream())
+                    .findFirst()
+                    .map(batch -> batch.fileNames)
+                    .orElseThrow(() -> new RuntimeException("Could not analyze file names")));
+  }
+
+  /** Records latency and outcome of every attempt, retries included. */
+  private <T> Supplier<CompletableFuture<T>> instrumented(Supplier<CompletableFuture<T>> request) {
+    return () -> {
+      long start = System.nanoTime();
+      requests.increment();
+      return request
+          .get()
+          .whenComplete(
+              (result, e) -> {
+                requestDuration.recordSince(start);
+                if (e != null) {
+                  requestFailures.increment();
+                }
+              });
+    };
+  }
+
+  private void recordUsage(CompletionUsage usage) {
+    promptTokens.add(usage.promptTokens());
+    completionTokens.add(usage.completionTokens());
+  }
+
+  private static String formatBatch(List<String> analyzableContents) {
+    return IntStream.range(0, analyzableContents.size())
+        .mapToObj(i -> "### Document " + (i + 1) + "\n" + analyzableContents.get(i))
+        .collect(Collectors.joining("\n\n"));
   }
 
   private String getFileNameAnalysisSystemPrompt() {
@@ -48,4 +247,19 @@ public class OAIService {
                 Return only the filename, nothing else.
                 """;
   }
+
+  private String getFileNameBatchAnalysisSystemPrompt() {
+    return """
+                The following message contains several documents, each introduced by a "### Document <n>" heading.
+                For each document, generate a Linux-compatible filename under 40 characters that clearly describes its content.
+                Use underscores instead of spaces, avoid special characters, and make it descriptive enough to identify the content at a glance.
+                Make sure to include all relevant information, such as the date, if available.
+                Do not add a file extension.
+                Return exactly one filename per document, in the same order as the documents.
+                """;
+  }
+
+  public static class FileNameBatch {
+    public List<String> fileNames;
+  }
 }
@@ -0,0 +1,134 @@
+package com.felixkroemer.analysis.ai;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Shrinks extracted document text to a token budget before it is sent to the LLM. Whitespace is
+ * normalized, repeated lines and typical footer boilerplate are dropped, and if the rest is still
+ * too long, date and title like lines are kept first. Kept lines stay in document order.
+ */
+public class PromptCompactor {
+
+  private static final int LEADING_LINES = 5;
+  private static final int MAX_TITLE_LENGTH = 80;
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern TOKEN = Pattern.compile("\\p{L}+|\\p{N}+|[^\\s\\p{L}\\p{N}]");
+  private static final Pattern DATE =
+      Pattern.compile(
+          "\\b\\d{1,2}[./-]\\d{1,2}[./-]\\d{2,4}\\b|\\b\\d{4}-\\d{2}(-\\d{2})?\\b"
+              + "|\\b(jan|feb|mar|märz|apr|may|mai|jun|jul|aug|sep|oct|okt|nov|dec|dez)\\p{L}*"
+              + "\\.?\\s+\\d{4}\\b",
+          Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+  private static final Pattern BOILERPLATE =
+      Pattern.compile(
+          "^(page|seite)\\s+\\d+(\\s+(of|von)\\s+\\d+)?$|^-?\\s*\\d+\\s*-?$"
+              + "|\\b(iban|bic|swift|ust-?idnr|vat\\s+(no|id)|steuernummer|amtsgericht"
+              + "|registergericht|hrb|geschäftsführer|managing director)\\b"
+              + "|https?://|www\\.|\\S+@\\S+\\.\\w+"
+              + "|\\b(tel|fax|phone)\\b\\.?\\s*:?\\s*\\+?[\\d\\s/()-]{6,}",
+          Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+
+  private final int tokenBudget;
+
+  public PromptCompactor(int tokenBudget) {
+    this.tokenBudget = tokenBudget;
+  }
+
+  public String compact(String text) {
+    var lines = new ArrayList<Line>();
+    var seen = new HashSet<String>();
+    for (var rawLine : text.split("\\R")) {
+      var line = WHITESPACE.matcher(rawLine).replaceAll(" ").strip();
+      if (line.isEmpty() || BOILERPLATE.matcher(line).find() || !seen.add(line.toLowerCase())) {
+        continue;
+      }
+      lines.add(new Line(lines.size(), line, estimateTokens(line), priority(line, lines.size())));
+    }
+
+    int total = lines.stream().mapToInt(Line::tokens).sum();
+    if (total <= tokenBudget) {
+      return lines.stream().map(Line::text).collect(Collectors.joining("\n"));
+    }
+
+    var byPriority = new ArrayList<>(lines);
+    byPriority.sort(
+        Comparator.comparingInt(Line::priority).reversed().thenComparingInt(Line::index));
+    var kept = new ArrayList<Line>();
+    int remaining = tokenBudget;
+    for (var line : byPriority) {
+      if (line.tokens() <= remaining) {
+        kept.add(line);
+        remaining -= line.tokens();
+      } else if (kept.isEmpty()) {
+        kept.add(truncate(line, remaining));
+        break;
+      }
+    }
+    kept.sort(Comparator.comparingInt(Line::index));
+    return kept.stream().map(Line::text).collect(Collectors.joining("\n"));
+  }
+
+  /**
+   * Rough local estimate of BPE tokens: about four letters or three digits per token and one
+   * token per punctuation character. Good enough for budgeting without shipping a vocabulary.
+   */
+  public static int estimateTokens(String text) {
+    int tokens = 0;
+    var matcher = TOKEN.matcher(text);
+    while (matcher.find()) {
+      int length = matcher.end() - matcher.start();
+      char first = text.charAt(matcher.start());
+      if (Character.isLetter(first)) {
+        tokens += (length + 3) / 4;
+      } else if (Character.isDigit(first)) {
+        tokens += (length + 2) / 3;
+      } else {
+        tokens++;
+      }
+    }
+    return tokens;
+  }
+
+  private static int priority(String line, int index) {
+    int priority = 0;
+    if (DATE.matcher(line).find()) {
+      priority += 3;
+    }
+    if (isTitleLike(line)) {
+      priority += 2;
+    }
+    if (index < LEADING_LINES) {
+      priority += 1;
+    }
+    return priority;
+  }
+
+  private static boolean isTitleLike(String line) {
+    if (line.length() > MAX_TITLE_LENGTH || line.endsWith(".") || line.endsWith(",")) {
+      return false;
+    }
+    long letters = line.chars().filter(Character::isLetter).count();
+    return letters >= 3 && letters * 2 >= line.length() && Character.isUpperCase(line.charAt(0));
+  }
+
+  private static Line truncate(Line line, int budget) {
+    var words = new ArrayList<String>();
+    int tokens = 0;
+    for (var word : line.text().split(" ")) {
+      int wordTokens = estimateTokens(word);
+      if (tokens + wordTokens > budget) {
+        break;
+      }
+      words.add(word);
+      tokens += wordTokens;
+    }
+    return new Line(line.index(), String.join(" ", words), tokens, line.priority());
+  }
+
+  private record Line(int index, String text, int tokens, int priority) {}
+}
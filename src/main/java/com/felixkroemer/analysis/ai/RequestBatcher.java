@@ -0,0 +1,100 @@
+package com.felixkroemer.analysis.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects single requests until either the batch is full or the window since the first queued
+ * request has elapsed, then hands them to the batch function in one call and fans the results
+ * back out in order.
+ */
+public class RequestBatcher<I, O> {
+
+  private final Function<List<I>, CompletableFuture<List<O>>> batchFunction;
+  private final ScheduledExecutorService scheduler;
+  private final int maxBatchSize;
+  private final long windowMs;
+
+  private final List<PendingRequest<I, O>> pending = new ArrayList<>();
+  private ScheduledFuture<?> scheduledFlush;
+
+  public RequestBatcher(
+      Function<List<I>, CompletableFuture<List<O>>> batchFunction,
+      ScheduledExecutorService scheduler,
+      int maxBatchSize,
+      long windowMs) {
+    this.batchFunction = batchFunction;
+    this.scheduler = scheduler;
+    this.maxBatchSize = maxBatchSize;
+    this.windowMs = windowMs;
+  }
+
+  public CompletableFuture<O> submit(I input) {
+    var request = new PendingRequest<I, O>(input, new CompletableFuture<>());
+    List<PendingRequest<I, O>> batch = null;
+    synchronized (this) {
+      pending.add(request);
+      if (pending.size() >= maxBatchSize) {
+        batch = drain();
+      } else if (scheduledFlush == null) {
+        scheduledFlush = scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (batch != null) {
+      dispatch(batch);
+    }
+    return request.future();
+  }
+
+  private void flush() {
+    List<PendingRequest<I, O>> batch;
+    synchronized (this) {
+      batch = drain();
+    }
+    if (!batch.isEmpty()) {
+      dispatch(batch);
+    }
+  }
+
+  private List<PendingRequest<I, O>> drain() {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    var batch = new ArrayList<>(pending);
+    pending.clear();
+    return batch;
+  }
+
+  private void dispatch(List<PendingRequest<I, O>> batch) {
+    CompletableFuture<List<O>> results;
+    try {
+      results = batchFunction.apply(batch.stream().map(PendingRequest::input).toList());
+    } catch (Exception e) {
+      results = CompletableFuture.failedFuture(e);
+    }
+    results.whenComplete(
+        (outputs, e) -> {
+          var failure = e;
+          if (failure == null && outputs.size() != batch.size()) {
+            failure =
+                new IllegalStateException(
+                    "Expected " + batch.size() + " batch results but got " + outputs.size());
+          }
+          for (int i = 0; i < batch.size(); i++) {
+            if (failure != null) {
+              batch.get(i).future().completeExceptionally(failure);
+            } else {
+              batch.get(i).future().complete(outputs.get(i));
+            }
+          }
+        });
+  }
+
+  private record PendingRequest<I, O>(I input, CompletableFuture<O> future) {}
+}
@@ -0,0 +1,34 @@
+package com.felixkroemer.analysis.ai;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that hands out reservations instead of blocking. A caller that cannot get a token
+ * right away still takes one and is told how long to wait before using it.
+ */
+public class TokenBucketRateLimiter {
+
+  private final double permitsPerNano;
+  private final double capacity;
+
+  private double tokens;
+  private long lastRefillNanos;
+
+  public TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+    this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+    this.capacity = Math.max(1, burst);
+    this.tokens = capacity;
+    this.lastRefillNanos = System.nanoTime();
+  }
+
+  public synchronized long reserve() {
+    long now = System.nanoTime();
+    tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * permitsPerNano);
+    lastRefillNanos = now;
+    tokens -= 1;
+    if (tokens >= 0) {
+      return 0;
+    }
+    return (long) Math.ceil(-tokens / permitsPerNano);
+  }
+}
@@ -0,0 +1,11 @@
+package com.felixkroemer.analysis.ai.error;
+
+import com.felixkroemer.common.BaseException;
+import com.felixkroemer.common.ErrorCode;
+
+public class LLMUnavailableException extends BaseException {
+
+  public LLMUnavailableException(String message, Throwable e) {
+    super(ErrorCode.LLM_UNAVAILABLE, message, e);
+  }
+}
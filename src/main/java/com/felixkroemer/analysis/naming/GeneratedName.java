@@ -0,0 +1,16 @@
+package com.felixkroemer.analysis.naming;
+
+/**
+ * A generated file name together with where it came from, recorded as the naming source of the
+ * file_move row: {@code rule:<name>}, {@code cache} or {@code llm}.
+ */
+public record GeneratedName(String name, String source) {
+
+  static final String SOURCE_CACHE = "cache";
+  static final String SOURCE_LLM = "llm";
+  private static final String SOURCE_RULE_PREFIX = "rule:";
+
+  static GeneratedName fromRule(String ruleName, String name) {
+    return new GeneratedName(name, SOURCE_RULE_PREFIX + ruleName);
+  }
+}
@@ -0,0 +1,150 @@
+package com.felixkroemer.analysis.naming;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.format.DateTimeFormatter;
+import java.time.format.TextStyle;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns a generated name into a template by replacing the document's date with placeholders such
+ * as {@code {yyyy-MM}}, and fills such templates with the date of another document. This way the
+ * name of last month's invoice can be reused for this month's.
+ */
+final class NameTemplate {
+
+  /** Longest first, so {@code 2024-03-15} is not replaced as {@code {yyyy-MM}-15}. */
+  private static final List<String> NAME_DATE_PATTERNS =
+      List.of(
+          "yyyy-MM-dd",
+          "yyyy_MM_dd",
+          "yyyyMMdd",
+          "dd.MM.yyyy",
+          "MMMM_yyyy",
+          "MMM_yyyy",
+          "yyyy-MM",
+          "yyyy_MM",
+          "MM_yyyy",
+          "MM-yyyy",
+          "yyyy");
+
+  private static final Pattern ISO_DATE = Pattern.compile("\\b(\\d{4})-(\\d{2})-(\\d{2})\\b");
+  private static final Pattern DOTTED_DATE =
+      Pattern.compile("\\b(\\d{1,2})\\.(\\d{1,2})\\.(\\d{4})\\b");
+  private static final Pattern SLASHED_DATE =
+      Pattern.compile("\\b(\\d{1,2})/(\\d{1,2})/(\\d{4})\\b");
+  /** {@code 15 March 2024} or {@code 15. Mai 2024}. */
+  private static final Pattern DAY_MONTH_NAME_DATE =
+      Pattern.compile("\\b(\\d{1,2})\\.?\\s+(\\p{L}{3,})\\.?\\s+(\\d{4})\\b");
+  /** {@code March 15, 2024}. */
+  private static final Pattern MONTH_NAME_DAY_DATE =
+      Pattern.compile("\\b(\\p{L}{3,})\\.?\\s+(\\d{1,2}),?\\s+(\\d{4})\\b");
+
+  /** English and German month names and their common abbreviations, lower case. */
+  private static final Map<String, Integer> MONTHS = monthNames();
+  private static final Pattern PLACEHOLDER = Pattern.compile("\\{([^{}]+)}");
+
+  private NameTemplate() {}
+
+  /** The first date in the text, ISO, numeric day first or with an English or German month name. */
+  static Optional<LocalDate> findDate(String text) {
+    LocalDate first = null;
+    int firstIndex = Integer.MAX_VALUE;
+    for (var pattern :
+        List.of(ISO_DATE, DOTTED_DATE, SLASHED_DATE, DAY_MONTH_NAME_DATE, MONTH_NAME_DAY_DATE)) {
+      var matcher = pattern.matcher(text);
+      while (matcher.find() && matcher.start() < firstIndex) {
+        var date = toDate(matcher, pattern);
+        if (date.isPresent()) {
+          first = date.get();
+          firstIndex = matcher.start();
+          break;
+        }
+      }
+    }
+    return Optional.ofNullable(first);
+  }
+
+  /** Empty if the name cannot be templated safely. */
+  static Optional<String> toTemplate(String name, Optional<LocalDate> date) {
+    if (name.indexOf('{') >= 0 || name.indexOf('}') >= 0) {
+      return Optional.empty();
+    }
+    if (date.isEmpty()) {
+      return Optional.of(name);
+    }
+    var template = name;
+    for (var pattern : NAME_DATE_PATTERNS) {
+      var formatted = DateTimeFormatter.ofPattern(pattern, Locale.ENGLISH).format(date.get());
+      template = template.replace(formatted, "{" + pattern + "}");
+    }
+    return Optional.of(template);
+  }
+
+  /** Empty if the template has placeholders but the document has no date to fill them with. */
+  static Optional<String> fill(String template, Optional<LocalDate> date) {
+    var matcher = PLACEHOLDER.matcher(template);
+    if (!matcher.find()) {
+      return Optional.of(template);
+    }
+    if (date.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        matcher.replaceAll(
+            placeholder ->
+                Matcher.quoteReplacement(
+                    DateTimeFormatter.ofPattern(placeholder.group(1), Locale.ENGLISH)
+                        .format(date.get()))));
+  }
+
+  private static Optional<LocalDate> toDate(Matcher matcher, Pattern pattern) {
+    int year;
+    Integer month;
+    int day;
+    if (pattern == ISO_DATE) {
+      year = Integer.parseInt(matcher.group(1));
+      month = Integer.parseInt(matcher.group(2));
+      day = Integer.parseInt(matcher.group(3));
+    } else if (pattern == MONTH_NAME_DAY_DATE) {
+      month = MONTHS.get(matcher.group(1).toLowerCase(Locale.ROOT));
+      day = Integer.parseInt(matcher.group(2));
+      year = Integer.parseInt(matcher.group(3));
+    } else {
+      day = Integer.parseInt(matcher.group(1));
+      month =
+          pattern == DAY_MONTH_NAME_DATE
+              ? MONTHS.get(matcher.group(2).toLowerCase(Locale.ROOT))
+              : Integer.valueOf(matcher.group(2));
+      year = Integer.parseInt(matcher.group(3));
+    }
+    if (month == null) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(LocalDate.of(year, month, day));
+    } catch (DateTimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static Map<String, Integer> monthNames() {
+    var months = new HashMap<String, Integer>();
+    for (var locale : List.of(Locale.ENGLISH, Locale.GERMAN)) {
+      for (var month : Month.values()) {
+        for (var style : List.of(TextStyle.FULL, TextStyle.SHORT)) {
+          var name = month.getDisplayName(style, locale).toLowerCase(locale).replace(".", "");
+          months.put(name, month.getValue());
+        }
+      }
+    }
+    return Map.copyOf(months);
+  }
+}
@@ -0,0 +1,154 @@
+package com.felixkroemer.analysis.naming;
+
+import static com.felixkroemer.config.ConfigurationManager.NAMING_CACHE_SIMILARITY;
+import static com.felixkroemer.config.ConfigurationManager.NAMING_CACHE_SIZE;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.metrics.Counter;
+import com.felixkroemer.metrics.Metrics;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * LRU cache from SimHash fingerprints to name templates, stored in the config directory. A lookup
+ * returns the template of the most similar cached document if it reaches the configured
+ * similarity. A size of 0 disables the cache.
+ */
+@Slf4j
+@Singleton
+public class NamingCache {
+
+  private static final String CACHE_FILENAME = "naming-cache.tsv";
+  private static final long SAVE_DELAY_MS = 1000;
+
+  private final int capacity;
+  private final double minSimilarity;
+  private final Path cacheFile;
+  private final LinkedHashMap<Long, String> templates;
+  private final ScheduledExecutorService saver;
+  private boolean saveScheduled;
+
+  private final Counter evictions;
+
+  @Inject
+  public NamingCache(ConfigurationManager configurationManager, Metrics metrics) {
+    this.capacity = configurationManager.getInt(NAMING_CACHE_SIZE);
+    this.minSimilarity = configurationManager.getDouble(NAMING_CACHE_SIMILARITY);
+    this.cacheFile = configurationManager.getConfigDir().resolve(CACHE_FILENAME);
+    this.templates =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            if (size() > capacity) {
+              evictions.increment();
+              return true;
+            }
+            return false;
+          }
+        };
+    this.saver =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("naming-cache").daemon(true).factory());
+
+    this.evictions =
+        metrics.counter(
+            "dropcatcher_naming_cache_evictions_total", "Templates evicted from the cache");
+    metrics.gauge("dropcatcher_naming_cache_size", "Templates in the cache", this::size);
+
+    if (isEnabled()) {
+      load();
+    }
+  }
+
+  public boolean isEnabled() {
+    return capacity > 0;
+  }
+
+  public synchronized Optional<String> find(long fingerprint) {
+    Long best = null;
+    double bestSimilarity = minSimilarity;
+    for (long candidate : templates.keySet()) {
+      double similarity = SimHash.similarity(fingerprint, candidate);
+      if (similarity >= bestSimilarity) {
+        best = candidate;
+        bestSimilarity = similarity;
+      }
+    }
+    if (best == null) {
+      return Optional.empty();
+    }
+    // get() moves the entry to the most recently used position
+    return Optional.of(templates.get(best));
+  }
+
+  public synchronized void put(long fingerprint, String template) {
+    if (!isEnabled()) {
+      return;
+    }
+    templates.put(fingerprint, template);
+    if (!saveScheduled) {
+      saveScheduled = true;
+      saver.schedule(this::save, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public synchronized long size() {
+    return templates.size();
+  }
+
+  private void load() {
+    if (!Files.exists(cacheFile)) {
+      return;
+    }
+    try {
+      for (var line : Files.readAllLines(cacheFile, StandardCharsets.UTF_8)) {
+        int tab = line.indexOf('\t');
+        if (tab <= 0) {
+          continue;
+        }
+        templates.put(HexFormat.fromHexDigitsToLong(line, 0, tab), line.substring(tab + 1));
+      }
+      log.info("Loaded {} naming templates from {}", templates.size(), cacheFile);
+    } catch (IOException | IllegalArgumentException e) {
+      log.warn("Failed to load naming cache {}, starting empty", cacheFile, e);
+      templates.clear();
+    }
+  }
+
+  /** Writes the cache least recently used first, so loading restores the LRU order. */
+  public void save() {
+    List<String> lines = new ArrayList<>();
+    synchronized (this) {
+      saveScheduled = false;
+      if (!isEnabled()) {
+        return;
+      }
+      var hex = HexFormat.of();
+      templates.forEach(
+          (fingerprint, template) -> lines.add(hex.toHexDigits(fingerprint) + "\t" + template));
+    }
+    try {
+      var temp = Files.createTempFile(cacheFile.getParent(), CACHE_FILENAME, ".tmp");
+      Files.write(temp, lines, StandardCharsets.UTF_8);
+      Files.move(
+          temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Failed to save naming cache {}", cacheFile, e);
+    }
+  }
+}
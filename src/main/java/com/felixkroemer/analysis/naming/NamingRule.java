@@ -0,0 +1,88 @@
+package com.felixkroemer.analysis.naming;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A locally evaluated naming rule. It matches when all keywords occur in the text and the pattern,
+ * if any, is found. The name template may contain {@code {group}} placeholders for named groups of
+ * the pattern and {@link NameTemplate} date placeholders such as {@code {yyyy-MM}}.
+ */
+record NamingRule(String name, List<String> keywords, Optional<Pattern> pattern, String template) {
+
+  private static final Pattern UNSAFE_CHARS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  /** Empty if the rule does not match or a placeholder cannot be filled. */
+  Optional<String> apply(String text, String lowerCaseText, Optional<LocalDate> date) {
+    for (var keyword : keywords) {
+      if (!lowerCaseText.contains(keyword)) {
+        return Optional.empty();
+      }
+    }
+    var name = template;
+    if (pattern.isPresent()) {
+      var matcher = pattern.get().matcher(text);
+      if (!matcher.find()) {
+        return Optional.empty();
+      }
+      var filled = fillGroups(name, matcher);
+      if (filled.isEmpty()) {
+        return Optional.empty();
+      }
+      name = filled.get();
+    }
+    return NameTemplate.fill(name, date);
+  }
+
+  /** Throws an {@link IllegalArgumentException} for an invalid pattern or date placeholder. */
+  static NamingRule compile(String name, List<String> keywords, String pattern, String template) {
+    var rule =
+        new NamingRule(
+            name,
+            keywords.stream().map(keyword -> keyword.toLowerCase(Locale.ROOT)).toList(),
+            Optional.ofNullable(pattern)
+                .map(p -> Pattern.compile(p, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)),
+            template);
+    var withoutGroups = template;
+    for (var group : rule.groupNames()) {
+      withoutGroups = withoutGroups.replace("{" + group + "}", "x");
+    }
+    try {
+      NameTemplate.fill(withoutGroups, Optional.of(LocalDate.EPOCH));
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid name template " + template, e);
+    }
+    return rule;
+  }
+
+  private Optional<String> fillGroups(String name, Matcher matcher) {
+    for (var group : groupNames()) {
+      var placeholder = "{" + group + "}";
+      if (!name.contains(placeholder)) {
+        continue;
+      }
+      var value = sanitize(matcher.group(group));
+      if (value.isEmpty()) {
+        return Optional.empty();
+      }
+      name = name.replace(placeholder, value);
+    }
+    return Optional.of(name);
+  }
+
+  private Iterable<String> groupNames() {
+    return pattern.map(p -> p.namedGroups().keySet()).orElse(Set.of());
+  }
+
+  private static String sanitize(String value) {
+    if (value == null) {
+      return "";
+    }
+    return UNSAFE_CHARS.matcher(value.strip()).replaceAll("_").replaceAll("^_|_$", "");
+  }
+}
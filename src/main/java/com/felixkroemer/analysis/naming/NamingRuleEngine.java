@@ -0,0 +1,72 @@
+package com.felixkroemer.analysis.naming;
+
+import static com.felixkroemer.config.ConfigurationManager.NAMING_RULES;
+
+import com.felixkroemer.config.ConfigSnapshot;
+import com.felixkroemer.config.ConfigurationManager;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Names documents from the rules configured under {@code namingRule.<name>}, without calling the
+ * LLM. Rules are compiled once per configuration snapshot and evaluated in configured order, the
+ * first matching rule wins.
+ */
+@Slf4j
+@Singleton
+public class NamingRuleEngine {
+
+  private static final String RULE_PREFIX = "namingRule.";
+
+  private volatile List<NamingRule> rules;
+
+  @Inject
+  public NamingRuleEngine(ConfigurationManager configurationManager) {
+    this.rules = compile(configurationManager.getSnapshot());
+    configurationManager.addListener(config -> rules = compile(config));
+  }
+
+  public boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  public Optional<GeneratedName> apply(String text, Optional<LocalDate> date) {
+    var lowerCaseText = text.toLowerCase(Locale.ROOT);
+    for (var rule : rules) {
+      var name = rule.apply(text, lowerCaseText, date);
+      if (name.isPresent()) {
+        return Optional.of(GeneratedName.fromRule(rule.name(), name.get()));
+      }
+    }
+    return Optional.empty();
+  }
+
+  private static List<NamingRule> compile(ConfigSnapshot config) {
+    var compiled = new ArrayList<NamingRule>();
+    for (var name : config.getList(NAMING_RULES)) {
+      String prefix = RULE_PREFIX + name + ".";
+      var keywords = config.getList(prefix + "keywords");
+      var pattern = config.getString(prefix + "pattern");
+      var template = config.getString(prefix + "name");
+      if (template == null || (keywords.isEmpty() && pattern == null)) {
+        log.error("Naming rule {} needs a name and a pattern or keywords, skipping it", name);
+        continue;
+      }
+      try {
+        compiled.add(NamingRule.compile(name, keywords, pattern, template));
+      } catch (IllegalArgumentException e) {
+        log.error("Naming rule {} is invalid, skipping it", name, e);
+      }
+    }
+    if (!compiled.isEmpty()) {
+      log.info("Loaded naming rules {}", compiled.stream().map(NamingRule::name).toList());
+    }
+    return List.copyOf(compiled);
+  }
+}
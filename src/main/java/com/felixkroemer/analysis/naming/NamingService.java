@@ -0,0 +1,83 @@
+package com.felixkroemer.analysis.naming;
+
+import com.felixkroemer.analysis.ai.OAIService;
+import com.felixkroemer.metrics.Counter;
+import com.felixkroemer.metrics.Metrics;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Generates file names from extracted document text. Documents matched by a configured naming rule
+ * are named by the {@link NamingRuleEngine}, recurring documents whose text only differs in numbers
+ * and dates are named from the {@link NamingCache}, everything else goes to the LLM.
+ */
+@Slf4j
+@Singleton
+public class NamingService {
+
+  private static final int MIN_FINGERPRINT_WORDS = 8;
+
+  private final OAIService oaiService;
+  private final NamingCache namingCache;
+  private final NamingRuleEngine ruleEngine;
+  private final Counter ruleHits;
+  private final Counter hits;
+  private final Counter misses;
+
+  @Inject
+  public NamingService(
+      OAIService oaiService,
+      NamingCache namingCache,
+      NamingRuleEngine ruleEngine,
+      Metrics metrics) {
+    this.oaiService = oaiService;
+    this.namingCache = namingCache;
+    this.ruleEngine = ruleEngine;
+    this.ruleHits =
+        metrics.counter("dropcatcher_naming_rule_hits_total", "Names produced by a naming rule");
+    this.hits = metrics.counter("dropcatcher_naming_cache_hits_total", "Names served from cache");
+    this.misses =
+        metrics.counter("dropcatcher_naming_cache_misses_total", "Names that needed the LLM");
+  }
+
+  public GeneratedName analyzeFileName(String analyzableContent) {
+    var date = NameTemplate.findDate(analyzableContent);
+    if (!ruleEngine.isEmpty()) {
+      var ruleName = ruleEngine.apply(analyzableContent, date);
+      if (ruleName.isPresent()) {
+        ruleHits.increment();
+        log.debug("Named document by {}: {}", ruleName.get().source(), ruleName.get().name());
+        return ruleName.get();
+      }
+    }
+    if (!namingCache.isEnabled()) {
+      return fromLlm(analyzableContent);
+    }
+    var fingerprint = SimHash.fingerprint(analyzableContent, MIN_FINGERPRINT_WORDS);
+    if (fingerprint.isEmpty()) {
+      return fromLlm(analyzableContent);
+    }
+
+    var cachedName =
+        namingCache
+            .find(fingerprint.getAsLong())
+            .flatMap(template -> NameTemplate.fill(template, date));
+    if (cachedName.isPresent()) {
+      hits.increment();
+      log.debug("Named document from cache: {}", cachedName.get());
+      return new GeneratedName(cachedName.get(), GeneratedName.SOURCE_CACHE);
+    }
+
+    misses.increment();
+    var generated = fromLlm(analyzableContent);
+    NameTemplate.toTemplate(generated.name(), date)
+        .ifPresent(template -> namingCache.put(fingerprint.getAsLong(), template));
+    return generated;
+  }
+
+  private GeneratedName fromLlm(String analyzableContent) {
+    return new GeneratedName(
+        oaiService.analyzeFileName(analyzableContent), GeneratedName.SOURCE_LLM);
+  }
+}
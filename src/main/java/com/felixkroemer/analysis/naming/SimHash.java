@@ -0,0 +1,60 @@
+package com.felixkroemer.analysis.naming;
+
+import java.util.Locale;
+import java.util.OptionalLong;
+import java.util.regex.Pattern;
+
+/**
+ * 64 bit SimHash over the words of a text. Digits are ignored, so documents that only differ in
+ * dates, amounts or numbers get the same or a very close fingerprint.
+ */
+final class SimHash {
+
+  private static final Pattern WORD = Pattern.compile("\\p{L}{2,}");
+
+  private SimHash() {}
+
+  /** Fingerprint of the text, empty if it has fewer than {@code minWords} words. */
+  static OptionalLong fingerprint(String text, int minWords) {
+    var weights = new int[Long.SIZE];
+    int words = 0;
+    var matcher = WORD.matcher(text.toLowerCase(Locale.ROOT));
+    while (matcher.find()) {
+      long hash = hash(matcher.group());
+      for (int bit = 0; bit < Long.SIZE; bit++) {
+        weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+      }
+      words++;
+    }
+    if (words < minWords) {
+      return OptionalLong.empty();
+    }
+    long fingerprint = 0;
+    for (int bit = 0; bit < Long.SIZE; bit++) {
+      if (weights[bit] > 0) {
+        fingerprint |= 1L << bit;
+      }
+    }
+    return OptionalLong.of(fingerprint);
+  }
+
+  /** Share of equal bits, 1.0 for identical fingerprints. */
+  static double similarity(long a, long b) {
+    return 1.0 - Long.bitCount(a ^ b) / (double) Long.SIZE;
+  }
+
+  /** FNV-1a followed by the MurmurHash3 finalizer to spread short words over all bits. */
+  private static long hash(String word) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < word.length(); i++) {
+      hash ^= word.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
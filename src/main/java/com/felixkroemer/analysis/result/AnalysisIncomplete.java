@@ -1,3 +1,8 @@
 package com.felixkroemer.analysis.result;
 
-public record AnalysisIncomplete(String message) implements AnalysisResult {}
+public record AnalysisIncomplete(String message, boolean retryable) implements AnalysisResult {
+
+  public AnalysisIncomplete(String message) {
+    this(message, false);
+  }
+}
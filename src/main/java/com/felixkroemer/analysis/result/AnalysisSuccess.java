@@ -2,4 +2,7 @@ package com.felixkroemer.analysis.result;
 
 public non-sealed interface AnalysisSuccess extends AnalysisResult {
   String getAnalyzedName();
+
+  /** Where the name came from, e.g. {@code llm}, {@code cache} or {@code rule:<name>}. */
+  String getNamingSource();
 }
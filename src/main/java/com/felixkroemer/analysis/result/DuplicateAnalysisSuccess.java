@@ -0,0 +1,15 @@
+package com.felixkroemer.analysis.result;
+
+public record DuplicateAnalysisSuccess(String fileHash, String analyzedName)
+    implements AnalysisSuccess {
+
+  @Override
+  public String getAnalyzedName() {
+    return analyzedName;
+  }
+
+  @Override
+  public String getNamingSource() {
+    return "duplicate";
+  }
+}
@@ -0,0 +1,24 @@
+package com.felixkroemer.analysis.result;
+
+import java.time.LocalDateTime;
+
+public record ImageAnalysisSuccess(
+    String filePath,
+    String fileName,
+    long fileSize,
+    LocalDateTime analyzedAt,
+    LocalDateTime capturedAt,
+    String cameraModel,
+    String analyzedName)
+    implements AnalysisSuccess {
+
+  @Override
+  public String getAnalyzedName() {
+    return analyzedName;
+  }
+
+  @Override
+  public String getNamingSource() {
+    return "exif";
+  }
+}
@@ -0,0 +1,24 @@
+package com.felixkroemer.analysis.result;
+
+import java.time.LocalDateTime;
+
+public record OfficeAnalysisSuccess(
+    String filePath,
+    String fileName,
+    long fileSize,
+    LocalDateTime analyzedAt,
+    String contentType,
+    String analyzedName,
+    String namingSource)
+    implements AnalysisSuccess {
+
+  @Override
+  public String getAnalyzedName() {
+    return analyzedName;
+  }
+
+  @Override
+  public String getNamingSource() {
+    return namingSource;
+  }
+}
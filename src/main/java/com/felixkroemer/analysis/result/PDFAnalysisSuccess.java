@@ -8,11 +8,17 @@ public record PDFAnalysisSuccess(
     long fileSize,
     LocalDateTime analyzedAt,
     int pageCount,
-    String analyzedName)
+    String analyzedName,
+    String namingSource)
     implements AnalysisSuccess {
 
   @Override
   public String getAnalyzedName() {
     return analyzedName;
   }
+
+  @Override
+  public String getNamingSource() {
+    return namingSource;
+  }
 }
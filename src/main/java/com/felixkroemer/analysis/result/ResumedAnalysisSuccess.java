@@ -0,0 +1,15 @@
+package com.felixkroemer.analysis.result;
+
+public record ResumedAnalysisSuccess(String fileHash, String analyzedName, String namingSource)
+    implements AnalysisSuccess {
+
+  @Override
+  public String getAnalyzedName() {
+    return analyzedName;
+  }
+
+  @Override
+  public String getNamingSource() {
+    return namingSource;
+  }
+}
@@ -0,0 +1,319 @@
+package com.felixkroemer.claim;
+
+import static com.felixkroemer.config.ConfigurationManager.CLAIMING_ENABLED;
+import static com.felixkroemer.config.ConfigurationManager.CLAIM_HEARTBEAT_MS;
+import static com.felixkroemer.config.ConfigurationManager.CLAIM_LEASE_MS;
+import static com.felixkroemer.config.ConfigurationManager.INSTANCE_ID;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.config.WatchRule;
+import com.felixkroemer.file.FileJob;
+import com.felixkroemer.file.error.FileClaimLostException;
+import com.felixkroemer.file.error.FileHandlingFailedException;
+import com.felixkroemer.metrics.Counter;
+import com.felixkroemer.metrics.Metrics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lets several instances share an input directory. A stable file is claimed by atomically renaming
+ * it to {@code <inputDir>/.claims/<instanceId>/<row id>/<relative path>}, only one instance can win
+ * that rename, the others see the file vanish and drop it. The row id keeps a new drop apart from
+ * an earlier file of the same name that is still claimed, e.g. while it waits for a retry.
+ *
+ * <p>Every instance touches a heartbeat file in its claim directory, claims of instances whose
+ * heartbeat has not changed for the lease duration are renamed back into the input directory and
+ * picked up like new drops.
+ *
+ * <p>Leases are measured with the local clock from the moment a heartbeat change was observed, so
+ * clocks of different hosts do not need to agree. Rows keep the original path of a file, the claim
+ * only changes where its content is read from.
+ */
+@Slf4j
+@Singleton
+public class FileClaimer {
+
+  private static final String CLAIMS_DIRECTORY = ".claims";
+  private static final String HEARTBEAT_FILENAME = ".heartbeat";
+  private static final String INSTANCE_ID_FILENAME = "instance-id";
+
+  private final ConfigurationManager configurationManager;
+  private final boolean enabled;
+  @Getter private final String instanceId;
+  private final long heartbeatMs;
+  private final long leaseNanos;
+  private final ScheduledExecutorService scheduler;
+  private final Map<Path, Observation> observed = new HashMap<>();
+  private final Map<Path, Path> leftoverClaims = new ConcurrentHashMap<>();
+
+  private final Counter claimsLost;
+  private final Counter filesReclaimed;
+
+  private record Observation(FileTime heartbeat, long seenAtNanos) {}
+
+  @Inject
+  public FileClaimer(ConfigurationManager configurationManager, Metrics metrics) {
+    this.configurationManager = configurationManager;
+    this.enabled = configurationManager.getBoolean(CLAIMING_ENABLED);
+    this.instanceId = enabled ? resolveInstanceId(configurationManager) : null;
+    this.heartbeatMs = configurationManager.getInt(CLAIM_HEARTBEAT_MS);
+    this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(configurationManager.getInt(CLAIM_LEASE_MS));
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("claims").daemon(true).factory());
+    this.claimsLost =
+        metrics.counter("dropcatcher_claims_lost_total", "Files claimed by another instance first");
+    this.filesReclaimed =
+        metrics.counter(
+            "dropcatcher_claims_reclaimed_total", "Files released from expired claim directories");
+  }
+
+  /**
+   * Notes the files this instance claimed before a restart, then starts the heartbeat and the
+   * reaper. The files stay claimed, so that their rows are resumed from the claim directory, see
+   * {@link #releaseLeftovers(Set)}.
+   */
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    log.info("Claiming files as instance {}", instanceId);
+    for (var rule : configurationManager.getWatchRules()) {
+      var claimRoot = claimRoot(rule.inputDir(), instanceId);
+      try (DirectoryStream<Path> claims = Files.newDirectoryStream(claimRoot, Files::isDirectory)) {
+        claims.forEach(claim -> leftoverClaims.put(claim, rule.inputDir()));
+      } catch (NoSuchFileException e) {
+        // Nothing was claimed in this directory before
+      } catch (IOException e) {
+        log.error("Failed to list files claimed before the restart in {}", claimRoot, e);
+      }
+    }
+    scheduler.scheduleWithFixedDelay(this::tick, 0, heartbeatMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the files claimed before the restart whose rows are not resumed to their input
+   * directories, so that they are claimed again like new drops. These are files whose row was never
+   * written or has already finished.
+   *
+   * @param resumedIds ids of the rows the retry scheduler resumes, their files stay claimed
+   */
+  public void releaseLeftovers(Set<UUID> resumedIds) {
+    var resumed = new HashSet<String>();
+    resumedIds.forEach(id -> resumed.add(id.toString()));
+    leftoverClaims.forEach(
+        (claim, inputDir) -> {
+          if (!resumed.contains(claim.getFileName().toString())) {
+            log.info("Releasing {}, claimed before the restart without a resumed row", claim);
+            releaseClaim(claim, inputDir);
+            deleteEmptyDirectories(claim);
+          }
+        });
+    leftoverClaims.clear();
+  }
+
+  public void stop() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Moves the file of the job into this instance's claim directory. A retried row whose file this
+   * instance claimed before is used in place.
+   *
+   * @throws FileClaimLostException if another instance claimed the file first
+   */
+  public void claim(FileJob job) {
+    if (!enabled) {
+      return;
+    }
+    var original = job.getInputFilePath();
+    var claimed = claimedPath(job.getId(), original, job.getRule());
+    if (Files.exists(claimed, LinkOption.NOFOLLOW_LINKS)) {
+      job.setClaimedPath(claimed);
+      return;
+    }
+    try {
+      Files.createDirectories(claimed.getParent());
+      Files.move(original, claimed, StandardCopyOption.ATOMIC_MOVE);
+    } catch (NoSuchFileException e) {
+      claimsLost.increment();
+      throw new FileClaimLostException("File {} was claimed by another instance", original);
+    } catch (IOException e) {
+      throw new FileHandlingFailedException("Failed to claim file: {}", original, e);
+    }
+    job.setClaimedPath(claimed);
+  }
+
+  /** Whether the file of a row still exists, at its original path or claimed by this instance. */
+  public boolean exists(UUID id, Path original, WatchRule rule) {
+    return Files.exists(original)
+        || (enabled && Files.exists(claimedPath(id, original, rule), LinkOption.NOFOLLOW_LINKS));
+  }
+
+  private Path claimedPath(UUID id, Path original, WatchRule rule) {
+    return claimRoot(rule.inputDir(), instanceId)
+        .resolve(id.toString())
+        .resolve(rule.inputDir().relativize(original));
+  }
+
+  private static Path claimRoot(Path inputDir, String instanceId) {
+    return inputDir.resolve(CLAIMS_DIRECTORY).resolve(instanceId);
+  }
+
+  private void tick() {
+    var inputDirs = new HashSet<Path>();
+    configurationManager.getWatchRules().forEach(rule -> inputDirs.add(rule.inputDir()));
+    for (var inputDir : inputDirs) {
+      try {
+        heartbeat(inputDir);
+        reapExpired(inputDir);
+      } catch (Exception e) {
+        log.error("Failed to maintain claims in {}", inputDir, e);
+      }
+    }
+  }
+
+  private void heartbeat(Path inputDir) throws IOException {
+    var heartbeat = claimRoot(inputDir, instanceId).resolve(HEARTBEAT_FILENAME);
+    Files.createDirectories(heartbeat.getParent());
+    Files.write(heartbeat, new byte[0]);
+  }
+
+  private void reapExpired(Path inputDir) throws IOException {
+    long now = System.nanoTime();
+    try (DirectoryStream<Path> claimRoots =
+        Files.newDirectoryStream(inputDir.resolve(CLAIMS_DIRECTORY), Files::isDirectory)) {
+      for (var claimRoot : claimRoots) {
+        if (claimRoot.getFileName().toString().equals(instanceId)) {
+          continue;
+        }
+        var heartbeat = lastHeartbeat(claimRoot);
+        var observation = observed.get(claimRoot);
+        if (observation == null || !observation.heartbeat().equals(heartbeat)) {
+          observed.put(claimRoot, new Observation(heartbeat, now));
+        } else if (now - observation.seenAtNanos() > leaseNanos) {
+          log.warn("Lease of instance {} expired, releasing its files", claimRoot.getFileName());
+          release(claimRoot, inputDir);
+          observed.remove(claimRoot);
+        }
+      }
+    } catch (NoSuchFileException e) {
+      // No instance has claimed files in this directory yet
+    }
+  }
+
+  private static FileTime lastHeartbeat(Path claimRoot) {
+    try {
+      return Files.getLastModifiedTime(claimRoot.resolve(HEARTBEAT_FILENAME));
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  /**
+   * Renames the files of a claim directory back to their input directory. Several instances may
+   * release the same directory concurrently, files another instance moved first are skipped.
+   */
+  private void release(Path claimRoot, Path inputDir) {
+    // Claimed files are nested in a directory named by their row id
+    try (DirectoryStream<Path> claims = Files.newDirectoryStream(claimRoot, Files::isDirectory)) {
+      claims.forEach(claim -> releaseClaim(claim, inputDir));
+    } catch (NoSuchFileException e) {
+      return;
+    } catch (IOException e) {
+      log.error("Failed to release claimed files in {}", claimRoot, e);
+      return;
+    }
+    deleteEmptyDirectories(claimRoot);
+  }
+
+  private void releaseClaim(Path claim, Path inputDir) {
+    try (Stream<Path> files = Files.walk(claim)) {
+      files
+          .filter(file -> Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+          .forEach(file -> releaseFile(file, inputDir.resolve(claim.relativize(file))));
+    } catch (NoSuchFileException e) {
+      // Released by another instance
+    } catch (IOException | UncheckedIOException e) {
+      log.error("Failed to release claimed files in {}", claim, e);
+    }
+  }
+
+  private void releaseFile(Path claimed, Path original) {
+    try {
+      if (Files.exists(original, LinkOption.NOFOLLOW_LINKS)) {
+        log.warn("Cannot release {}, {} exists again", claimed, original);
+        return;
+      }
+      Files.createDirectories(original.getParent());
+      Files.move(claimed, original, StandardCopyOption.ATOMIC_MOVE);
+      filesReclaimed.increment();
+    } catch (NoSuchFileException e) {
+      log.debug("{} was released by another instance", claimed);
+    } catch (IOException e) {
+      log.error("Failed to release {}", claimed, e);
+    }
+  }
+
+  private static void deleteEmptyDirectories(Path claimRoot) {
+    try (Stream<Path> paths = Files.walk(claimRoot)) {
+      paths
+          .sorted(Comparator.reverseOrder())
+          .forEach(
+              path -> {
+                try {
+                  if (path.getFileName().toString().equals(HEARTBEAT_FILENAME)
+                      || Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.deleteIfExists(path);
+                  }
+                } catch (IOException e) {
+                  log.debug("Could not delete {}", path, e);
+                }
+              });
+    } catch (IOException | UncheckedIOException e) {
+      log.debug("Could not clean up {}", claimRoot, e);
+    }
+  }
+
+  private static String resolveInstanceId(ConfigurationManager configurationManager) {
+    var configured = configurationManager.getString(INSTANCE_ID);
+    if (configured != null && !configured.isBlank()) {
+      return configured.strip();
+    }
+    var idFile = configurationManager.getConfigDir().resolve(INSTANCE_ID_FILENAME);
+    try {
+      if (Files.exists(idFile)) {
+        return Files.readString(idFile, StandardCharsets.UTF_8).strip();
+      }
+      var id = UUID.randomUUID().toString();
+      Files.createDirectories(idFile.getParent());
+      Files.writeString(idFile, id, StandardCharsets.UTF_8);
+      return id;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read or create instance id " + idFile, e);
+    }
+  }
+}
@@ -7,4 +7,6 @@ public enum ErrorCode {
   NO_ANALYZER_AVAILABLE,
   ANALYSIS_INCOMPLETE,
   ANALYSIS_FAILED,
+  LLM_UNAVAILABLE,
+  FILE_CLAIM_LOST,
 }
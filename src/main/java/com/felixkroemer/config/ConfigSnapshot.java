@@ -0,0 +1,145 @@
+package com.felixkroemer.config;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import lombok.Getter;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.convert.PropertyConverter;
+
+/**
+ * Immutable view of the configuration at one point in time. All values are interpolated when the
+ * snapshot is taken, paths and watch rules are resolved up front and typed values are parsed on
+ * first access only.
+ */
+public final class ConfigSnapshot {
+
+  private static final String RULE_PREFIX = "rule.";
+  private static final String DEFAULT_RULE_NAME = "default";
+
+  private final Map<String, String> values;
+  private final Map<String, Object> parsed = new ConcurrentHashMap<>();
+  @Getter private final Path inputDir;
+  @Getter private final Path outputDir;
+  @Getter private final List<WatchRule> watchRules;
+
+  private ConfigSnapshot(Map<String, String> values) {
+    this.values = values;
+    this.inputDir = resolvePath(values.get(ConfigurationManager.INPUT_DIRECTORY));
+    this.outputDir = resolvePath(values.get(ConfigurationManager.OUTPUT_DIRECTORY));
+    this.watchRules = readWatchRules();
+  }
+
+  static ConfigSnapshot of(Configuration config) {
+    var values = new HashMap<String, String>();
+    config.getKeys().forEachRemaining(key -> values.put(key, config.getString(key)));
+    return new ConfigSnapshot(Map.copyOf(values));
+  }
+
+  public String getString(String key) {
+    return values.get(key);
+  }
+
+  public int getInt(String key) {
+    return parse(key, Integer.class, PropertyConverter::toInteger);
+  }
+
+  /** Comma separated values, empty if the key is not set. */
+  public List<String> getList(String key) {
+    return splitList(values.get(key));
+  }
+
+  public double getDouble(String key) {
+    return parse(key, Double.class, PropertyConverter::toDouble);
+  }
+
+  public boolean getBoolean(String key) {
+    return parse(key, Boolean.class, PropertyConverter::toBoolean);
+  }
+
+  public Optional<WatchRule> findWatchRule(Path directory) {
+    return watchRules.stream()
+        .filter(rule -> rule.covers(directory))
+        .max(Comparator.comparingInt(rule -> rule.inputDir().getNameCount()));
+  }
+
+  /** Keys whose value differs between the two snapshots. */
+  public Set<String> changedKeys(ConfigSnapshot other) {
+    var keys = new TreeSet<String>();
+    keys.addAll(values.keySet());
+    keys.addAll(other.values.keySet());
+    keys.removeIf(key -> Objects.equals(values.get(key), other.values.get(key)));
+    return keys;
+  }
+
+  private <T> T parse(String key, Class<T> type, Function<Object, T> parser) {
+    return type.cast(
+        parsed.computeIfAbsent(
+            type.getSimpleName() + ":" + key,
+            ignored -> {
+              var value = values.get(key);
+              if (value == null) {
+                throw new NoSuchElementException(
+                    "Key '" + key + "' does not map to an existing object!");
+              }
+              return parser.apply(value);
+            }));
+  }
+
+  private List<WatchRule> readWatchRules() {
+    var ruleNames = splitList(values.get(ConfigurationManager.WATCH_RULES));
+    if (ruleNames.isEmpty()) {
+      return List.of(new WatchRule(DEFAULT_RULE_NAME, inputDir, outputDir, false, Set.of(), 0));
+    }
+    return ruleNames.stream().map(this::readWatchRule).toList();
+  }
+
+  private WatchRule readWatchRule(String name) {
+    String prefix = RULE_PREFIX + name + ".";
+    var ruleInputDir = resolvePath(values.get(prefix + ConfigurationManager.INPUT_DIRECTORY));
+    var ruleOutputDir = resolvePath(values.get(prefix + ConfigurationManager.OUTPUT_DIRECTORY));
+    if (ruleInputDir == null || ruleOutputDir == null) {
+      throw new IllegalStateException("Watch rule " + name + " needs an input and output dir");
+    }
+    var recursive = values.get(prefix + "recursive");
+    var priority = values.get(prefix + "priority");
+    return new WatchRule(
+        name,
+        ruleInputDir,
+        ruleOutputDir,
+        recursive == null || PropertyConverter.toBoolean(recursive),
+        Set.copyOf(splitList(values.get(prefix + "analyzers"))),
+        priority == null ? 0 : PropertyConverter.toInteger(priority).intValue());
+  }
+
+  private static Path resolvePath(String rawPath) {
+    if (rawPath == null) {
+      return null;
+    }
+    if (rawPath.startsWith("~" + File.separator) || rawPath.equals("~")) {
+      return Paths.get(System.getProperty("user.home") + rawPath.substring(1))
+          .toAbsolutePath()
+          .normalize();
+    }
+    return Paths.get(rawPath).toAbsolutePath().normalize();
+  }
+
+  private static List<String> splitList(String value) {
+    if (value == null) {
+      return List.of();
+    }
+    return Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+  }
+}
@@ -2,33 +2,95 @@ package com.felixkroemer.config;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.configuration2.CompositeConfiguration;
-import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.commons.configuration2.SystemConfiguration;
 import org.apache.commons.configuration2.builder.FileBasedConfigurationBuilder;
 import org.apache.commons.configuration2.builder.fluent.Parameters;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 
+@Slf4j
+@Singleton
 public class ConfigurationManager {
 
   public static final String INPUT_DIRECTORY = "inputDir";
   public static final String OUTPUT_DIRECTORY = "outputDir";
   public static final String OAI_KEY = "oaiKey";
+  public static final String WATCH_RULES = "watchRules";
   public static final String LLM_MODEL = "llmModel";
+  public static final String LLM_BATCHING_ENABLED = "llmBatchingEnabled";
+  public static final String LLM_BATCH_MAX_SIZE = "llmBatchMaxSize";
+  public static final String LLM_BATCH_WINDOW_MS = "llmBatchWindowMs";
+  public static final String LLM_TIMEOUT_MS = "llmTimeoutMs";
+  public static final String LLM_PROMPT_TOKEN_BUDGET = "llmPromptTokenBudget";
+  public static final String LLM_REQUESTS_PER_SECOND = "llmRequestsPerSecond";
+  public static final String LLM_BURST = "llmBurst";
+  public static final String LLM_MAX_IN_FLIGHT = "llmMaxInFlight";
+  public static final String LLM_MAX_ATTEMPTS = "llmMaxAttempts";
+  public static final String LLM_RETRY_BASE_DELAY_MS = "llmRetryBaseDelayMs";
+  public static final String LLM_CIRCUIT_FAILURE_THRESHOLD = "llmCircuitFailureThreshold";
+  public static final String LLM_CIRCUIT_OPEN_MS = "llmCircuitOpenMs";
+  public static final String MAX_IN_FLIGHT_FILES = "maxInFlightFiles";
+  public static final String HASH_CONCURRENCY = "hashConcurrency";
+  public static final String ANALYZE_CONCURRENCY = "analyzeConcurrency";
+  public static final String MOVE_CONCURRENCY = "moveConcurrency";
+  public static final String PERSIST_CONCURRENCY = "persistConcurrency";
+  public static final String STABILITY_QUIET_PERIOD_MS = "stabilityQuietPeriodMs";
+  public static final String STABILITY_TIMEOUT_MS = "stabilityTimeoutMs";
+  public static final String MAX_EXTRACTED_CHARS = "maxExtractedChars";
+  public static final String DB_BATCH_SIZE = "dbBatchSize";
+  public static final String DB_FLUSH_INTERVAL_MS = "dbFlushIntervalMs";
+  public static final String BACKLOG_BATCH_SIZE = "backlogBatchSize";
+  public static final String BACKLOG_CONCURRENCY = "backlogConcurrency";
+  public static final String RETRY_MAX_ATTEMPTS = "retryMaxAttempts";
+  public static final String RETRY_BASE_DELAY_MS = "retryBaseDelayMs";
+  public static final String RETRY_MAX_DELAY_MS = "retryMaxDelayMs";
+  public static final String RETRY_POLL_INTERVAL_MS = "retryPollIntervalMs";
+  public static final String RETRY_BATCH_SIZE = "retryBatchSize";
+  public static final String METRICS_PORT = "metricsPort";
+  public static final String NAMING_CACHE_SIZE = "namingCacheSize";
+  public static final String NAMING_CACHE_SIMILARITY = "namingCacheSimilarity";
+  public static final String NAMING_RULES = "namingRules";
+  public static final String CLAIMING_ENABLED = "claimingEnabled";
+  public static final String INSTANCE_ID = "instanceId";
+  public static final String CLAIM_HEARTBEAT_MS = "claimHeartbeatMs";
+  public static final String CLAIM_LEASE_MS = "claimLeaseMs";
+  public static final String INGEST_PORT = "ingestPort";
+  public static final String INGEST_BIND_ADDRESS = "ingestBindAddress";
+  public static final String INGEST_TOKEN = "ingestToken";
+  public static final String INGEST_RULE = "ingestRule";
+  public static final String INGEST_MAX_UPLOAD_MB = "ingestMaxUploadMb";
+  public static final String SHUTDOWN_TIMEOUT_MS = "shutdownTimeoutMs";
+  public static final String SCHEDULING_COST_MS_PER_MB = "schedulingCostMsPerMb";
+  public static final String ANALYSIS_MEMORY_BUDGET_MB = "analysisMemoryBudgetMb";
 
   private static final String CONFIG_FILENAME = "application.properties";
+  private static final String CONFIG_DIR_PROPERTY = "dropcatcher.configDir";
+  private static final long RELOAD_DEBOUNCE_MS = 200;
 
-  private Configuration config;
-  private FileBasedConfigurationBuilder<PropertiesConfiguration> builder;
+  private final List<Consumer<ConfigSnapshot>> listeners = new CopyOnWriteArrayList<>();
+  private volatile ConfigSnapshot snapshot;
+  private Thread watchThread;
 
   @Inject
   public ConfigurationManager() {
     try {
-      initializeConfiguration();
+      snapshot = loadSnapshot();
     } catch (Exception e) {
       throw new RuntimeException("Error initializing config", e);
     }
@@ -40,7 +102,7 @@ public class ConfigurationManager {
     return configDir.resolve(CONFIG_FILENAME).toFile();
   }
 
-  private void initializeConfiguration() throws ConfigurationException, IOException {
+  private ConfigSnapshot loadSnapshot() throws ConfigurationException, IOException {
     Parameters params = new Parameters();
 
     FileBasedConfigurationBuilder<PropertiesConfiguration> builderDefaults =
@@ -49,43 +111,135 @@ public class ConfigurationManager {
                 params
                     .fileBased()
                     .setURL(getClass().getClassLoader().getResource(CONFIG_FILENAME)));
-    builder =
+    FileBasedConfigurationBuilder<PropertiesConfiguration> builder =
         new FileBasedConfigurationBuilder<>(PropertiesConfiguration.class)
             .configure(params.fileBased().setFile(getConfigFile()));
 
     CompositeConfiguration cc = new CompositeConfiguration();
+    // -Dkey=value overrides both the user and the bundled configuration
+    cc.addConfiguration(new SystemConfiguration());
     cc.addConfiguration(builder.getConfiguration());
     cc.addConfiguration(builderDefaults.getConfiguration());
 
-    config = cc;
+    return ConfigSnapshot.of(cc);
   }
 
-  private Path getPath(String key) {
-    String rawPath = config.getString(key);
-    if (rawPath == null) {
-      return null;
+  /** The current configuration. Hold on to the returned snapshot for a consistent view. */
+  public ConfigSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /** Called with the new snapshot after every reload that changed a value. */
+  public void addListener(Consumer<ConfigSnapshot> listener) {
+    listeners.add(listener);
+  }
+
+  public synchronized void reload() {
+    ConfigSnapshot next;
+    try {
+      next = loadSnapshot();
+    } catch (Exception e) {
+      log.error("Failed to reload configuration, keeping the current one", e);
+      return;
     }
-    if (rawPath.startsWith("~" + File.separator) || rawPath.equals("~")) {
-      return Paths.get(System.getProperty("user.home") + rawPath.substring(1))
-          .toAbsolutePath()
-          .normalize();
+    var changedKeys = snapshot.changedKeys(next);
+    if (changedKeys.isEmpty()) {
+      return;
+    }
+    snapshot = next;
+    log.info("Configuration reloaded, changed keys: {}", changedKeys);
+    for (var listener : listeners) {
+      try {
+        listener.accept(next);
+      } catch (Exception e) {
+        log.error("Failed to apply reloaded configuration", e);
+      }
+    }
+  }
+
+  /** Reloads the configuration whenever the user's application.properties changes. */
+  public synchronized void startWatching() {
+    if (watchThread != null) {
+      return;
+    }
+    WatchService watcher;
+    var configDir = getConfigDir();
+    try {
+      watcher = FileSystems.getDefault().newWatchService();
+      configDir.register(
+          watcher,
+          StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY,
+          StandardWatchEventKinds.ENTRY_DELETE);
+    } catch (IOException e) {
+      log.error("Failed to watch configuration directory {}", configDir, e);
+      return;
     }
-    return Paths.get(rawPath).toAbsolutePath().normalize();
+    watchThread =
+        Thread.ofPlatform()
+            .name("config-watch")
+            .daemon(true)
+            .start(
+                () -> {
+                  while (true) {
+                    WatchKey key;
+                    try {
+                      key = watcher.take();
+                      // editors write in several steps, wait for them to finish
+                      Thread.sleep(RELOAD_DEBOUNCE_MS);
+                    } catch (InterruptedException | ClosedWatchServiceException e) {
+                      return;
+                    }
+                    boolean configChanged =
+                        key.pollEvents().stream()
+                            .anyMatch(
+                                event -> CONFIG_FILENAME.equals(String.valueOf(event.context())));
+                    key.reset();
+                    if (configChanged) {
+                      reload();
+                    }
+                  }
+                });
   }
 
   public String getString(String key) {
-    return config.getString(key);
+    return snapshot.getString(key);
+  }
+
+  public int getInt(String key) {
+    return snapshot.getInt(key);
+  }
+
+  public double getDouble(String key) {
+    return snapshot.getDouble(key);
+  }
+
+  public boolean getBoolean(String key) {
+    return snapshot.getBoolean(key);
   }
 
   public Path getInputDir() {
-    return getPath(INPUT_DIRECTORY);
+    return snapshot.getInputDir();
   }
 
   public Path getOutputDir() {
-    return getPath(OUTPUT_DIRECTORY);
+    return snapshot.getOutputDir();
+  }
+
+  public List<WatchRule> getWatchRules() {
+    return snapshot.getWatchRules();
+  }
+
+  public Optional<WatchRule> findWatchRule(Path directory) {
+    return snapshot.findWatchRule(directory);
   }
 
   public Path getConfigDir() {
+    var configured = System.getProperty(CONFIG_DIR_PROPERTY);
+    if (configured != null) {
+      // Lets several instances run side by side on one machine
+      return Paths.get(configured).toAbsolutePath();
+    }
     String os = System.getProperty("os.name").toLowerCase();
     if (os.contains("win")) {
       return Paths.get(System.getenv("APPDATA"), "drop-catcher");
@@ -0,0 +1,28 @@
+package com.felixkroemer.config;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Routes the files of one input directory. Files of rules with a higher {@code priority} are
+ * analyzed ahead of files that have waited up to a minute longer per priority level.
+ */
+public record WatchRule(
+    String name,
+    Path inputDir,
+    Path outputDir,
+    boolean recursive,
+    Set<String> analyzers,
+    int priority) {
+
+  /** Whether files of the given MIME type may be analyzed, {@code image/*} style entries match. */
+  public boolean allowsAnalyzer(String contentType) {
+    return analyzers.isEmpty()
+        || analyzers.contains(contentType)
+        || analyzers.contains(contentType.substring(0, contentType.indexOf('/') + 1) + "*");
+  }
+
+  public boolean covers(Path directory) {
+    return recursive ? directory.startsWith(inputDir) : directory.equals(inputDir);
+  }
+}
@@ -0,0 +1,46 @@
+package com.felixkroemer.dagger;
+
+import com.felixkroemer.analysis.FileAnalyzer;
+import com.felixkroemer.analysis.ImageAnalyzer;
+import com.felixkroemer.analysis.MimeTypeSniffer;
+import com.felixkroemer.analysis.OfficeAnalyzer;
+import com.felixkroemer.analysis.PDFAnalyzer;
+import com.felixkroemer.analysis.TextAnalyzer;
+import dagger.Binds;
+import dagger.Module;
+import dagger.multibindings.IntoMap;
+import dagger.multibindings.StringKey;
+
+@Module
+public interface AnalyzerModule {
+
+  @Binds
+  @IntoMap
+  @StringKey(MimeTypeSniffer.PDF)
+  FileAnalyzer bindPdfAnalyzer(PDFAnalyzer analyzer);
+
+  @Binds
+  @IntoMap
+  @StringKey(MimeTypeSniffer.TEXT)
+  FileAnalyzer bindTextAnalyzer(TextAnalyzer analyzer);
+
+  @Binds
+  @IntoMap
+  @StringKey("image/*")
+  FileAnalyzer bindImageAnalyzer(ImageAnalyzer analyzer);
+
+  @Binds
+  @IntoMap
+  @StringKey(MimeTypeSniffer.DOCX)
+  FileAnalyzer bindWordAnalyzer(OfficeAnalyzer analyzer);
+
+  @Binds
+  @IntoMap
+  @StringKey(MimeTypeSniffer.XLSX)
+  FileAnalyzer bindSpreadsheetAnalyzer(OfficeAnalyzer analyzer);
+
+  @Binds
+  @IntoMap
+  @StringKey(MimeTypeSniffer.PPTX)
+  FileAnalyzer bindPresentationAnalyzer(OfficeAnalyzer analyzer);
+}
@@ -1,9 +1,38 @@
 package com.felixkroemer.dagger;
 
+import com.felixkroemer.analysis.naming.NamingCache;
+import com.felixkroemer.claim.FileClaimer;
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.file.FileMoveWriter;
+import com.felixkroemer.ingest.IngestServer;
+import com.felixkroemer.metrics.PrometheusExporter;
+import com.felixkroemer.persistence.PersistenceInitializer;
+import com.felixkroemer.pipeline.ProcessingPipeline;
+import com.felixkroemer.retry.RetryScheduler;
 import com.felixkroemer.watch.Watch;
 import dagger.Component;
+import javax.inject.Singleton;
 
-@Component(modules = {DaggerModule.class})
+@Singleton
+@Component(modules = {DaggerModule.class, AnalyzerModule.class})
 public interface AppComponent {
+  ConfigurationManager getConfigurationManager();
+
+  PersistenceInitializer getPersistenceInitializer();
+
   Watch getWatch();
+
+  ProcessingPipeline getProcessingPipeline();
+
+  RetryScheduler getRetryScheduler();
+
+  FileClaimer getFileClaimer();
+
+  FileMoveWriter getFileMoveWriter();
+
+  IngestServer getIngestServer();
+
+  PrometheusExporter getPrometheusExporter();
+
+  NamingCache getNamingCache();
 }
@@ -1,8 +1,10 @@
 package com.felixkroemer.dagger;
 
 import com.felixkroemer.config.ConfigurationManager;
-import com.openai.client.OpenAIClient;
-import com.openai.client.okhttp.OpenAIOkHttpClient;
+import com.felixkroemer.persistence.ChangelogChecksum;
+import com.felixkroemer.persistence.PersistenceInitializer;
+import com.openai.client.OpenAIClientAsync;
+import com.openai.client.okhttp.OpenAIOkHttpClientAsync;
 import dagger.Module;
 import dagger.Provides;
 import liquibase.Contexts;
@@ -17,9 +19,13 @@ import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.service.ServiceRegistry;
 
+import javax.inject.Singleton;
 import java.sql.Connection;
+import java.nio.file.Path;
 import java.sql.DriverManager;
+import java.time.Duration;
 
+import static com.felixkroemer.config.ConfigurationManager.LLM_TIMEOUT_MS;
 import static com.felixkroemer.config.ConfigurationManager.OAI_KEY;
 
 @Module
@@ -27,29 +33,51 @@ import static com.felixkroemer.config.ConfigurationManager.OAI_KEY;
 public class DaggerModule {
 
   @Provides
-  OpenAIClient providesOpenAIClient(ConfigurationManager configurationManager) {
-    return OpenAIOkHttpClient.builder().apiKey(configurationManager.getString(OAI_KEY)).build();
+  @Singleton
+  OpenAIClientAsync providesOpenAIClient(ConfigurationManager configurationManager) {
+    return OpenAIOkHttpClientAsync.builder()
+        .apiKey(configurationManager.getString(OAI_KEY))
+        .timeout(Duration.ofMillis(configurationManager.getInt(LLM_TIMEOUT_MS)))
+        .maxRetries(0)
+        .build();
   }
 
   @Provides
-  SessionFactory getSessionFactory(ConfigurationManager configurationManager) {
+  @Singleton
+  SessionFactory getSessionFactory(PersistenceInitializer persistenceInitializer) {
+    return persistenceInitializer.getSessionFactory();
+  }
+
+  /**
+   * Migrates the SQLite database if the changelog changed since the last run and builds a session
+   * factory on top of it.
+   */
+  public static SessionFactory buildSessionFactory(Path databaseFile, int batchSize) {
     SessionFactory sessionFactory;
     try {
-      var configDir = configurationManager.getConfigDir();
-      String jdbcUrl = "jdbc:sqlite:" + configDir + "/sqlite.db";
-
-      runLiquibaseMigrations(jdbcUrl);
+      String jdbcUrl = "jdbc:sqlite:" + databaseFile;
+      var checksum = ChangelogChecksum.compute();
+      if (checksum.isPresent() && ChangelogChecksum.isCurrent(databaseFile, checksum.get())) {
+        log.info("Database schema is up to date, skipping Liquibase");
+      } else {
+        runLiquibaseMigrations(jdbcUrl);
+        checksum.ifPresent(c -> ChangelogChecksum.store(databaseFile, c));
+      }
 
       Configuration configuration = new Configuration();
 
       configuration.setProperty("hibernate.connection.driver_class", "org.sqlite.JDBC");
-      configuration.setProperty(
-          "hibernate.connection.url", "jdbc:sqlite:" + configDir + "/sqlite.db?journal_mode=WAL");
+      configuration.setProperty("hibernate.connection.url", jdbcUrl + "?journal_mode=WAL");
       configuration.setProperty(
           "hibernate.dialect", "org.hibernate.community.dialect.SQLiteDialect");
       configuration.setProperty(
           "hibernate.physical_naming_strategy",
           "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy");
+      configuration.setProperty("hibernate.jdbc.batch_size", String.valueOf(batchSize));
+      configuration.setProperty("hibernate.order_inserts", "true");
+      configuration.setProperty("hibernate.order_updates", "true");
+      // The dialect is fixed, don't open a connection during bootstrap to inspect the database
+      configuration.setProperty("hibernate.boot.allow_jdbc_metadata_access", "false");
 
       configuration.addAnnotatedClass(Class.forName("com.felixkroemer.file.FileMoveEntity"));
 
@@ -67,7 +95,7 @@ public class DaggerModule {
     return sessionFactory;
   }
 
-  void runLiquibaseMigrations(String jdbcUrl) {
+  static void runLiquibaseMigrations(String jdbcUrl) {
     try {
       Connection connection = DriverManager.getConnection(jdbcUrl);
       Database database =
@@ -1,150 +1,296 @@
 package com.felixkroemer.file;
 
+import com.felixkroemer.analysis.AnalyzerRegistry;
 import com.felixkroemer.analysis.FileAnalyzer;
-import com.felixkroemer.analysis.PDFAnalyzer;
+import com.felixkroemer.analysis.MimeTypeSniffer;
 import com.felixkroemer.analysis.result.AnalysisFailure;
 import com.felixkroemer.analysis.result.AnalysisIncomplete;
 import com.felixkroemer.analysis.result.AnalysisResult;
 import com.felixkroemer.analysis.result.AnalysisSuccess;
+import com.felixkroemer.analysis.result.DuplicateAnalysisSuccess;
+import com.felixkroemer.analysis.result.ResumedAnalysisSuccess;
 import com.felixkroemer.common.BaseException;
 import com.felixkroemer.common.ErrorCode;
-import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.config.WatchRule;
 import com.felixkroemer.file.error.FileHandlingFailedException;
-import com.felixkroemer.file.error.FileMoveException;
 import com.felixkroemer.file.error.FileMoveStatus;
-import com.felixkroemer.file.error.StabilityChecksExceededException;
+import com.felixkroemer.metrics.Histogram;
+import com.felixkroemer.metrics.Metrics;
+import com.felixkroemer.retry.RetryPolicy;
+import dagger.Lazy;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.SessionFactory;
 import org.jspecify.annotations.NonNull;
 
 import javax.inject.Inject;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 public class FileHandler {
 
-  private static final int MAX_CHECKS = 20;
-  private static final int CHECK_INTERVAL_MS = 100;
-  private static final int MAX_INTERVAL_MS = CHECK_INTERVAL_MS * 10;
+  private static final double BYTES_PER_MB = 1024 * 1024;
 
-  private final ConfigurationManager configurationManager;
-  private final SessionFactory sessionFactory;
-
-  private final Map<String, FileAnalyzer> analyzers;
+  private final Lazy<SessionFactory> sessionFactory;
+  private final FileMoveWriter fileMoveWriter;
+  private final StabilityTracker stabilityTracker;
+  private final FileHasher fileHasher;
+  private final RetryPolicy retryPolicy;
+  private final MimeTypeSniffer mimeTypeSniffer;
+  private final AnalyzerRegistry analyzerRegistry;
+  private final FileMover fileMover;
+  private final Histogram moveDuration;
 
   @Inject
   public FileHandler(
-      ConfigurationManager configurationManager,
-      PDFAnalyzer pdfAnalyzer,
-      SessionFactory sessionFactory) {
-    this.configurationManager = configurationManager;
+      MimeTypeSniffer mimeTypeSniffer,
+      AnalyzerRegistry analyzerRegistry,
+      Lazy<SessionFactory> sessionFactory,
+      FileMoveWriter fileMoveWriter,
+      StabilityTracker stabilityTracker,
+      FileHasher fileHasher,
+      RetryPolicy retryPolicy,
+      FileMover fileMover,
+      Metrics metrics) {
     this.sessionFactory = sessionFactory;
+    this.fileMoveWriter = fileMoveWriter;
+    this.stabilityTracker = stabilityTracker;
+    this.fileHasher = fileHasher;
+    this.retryPolicy = retryPolicy;
+    this.mimeTypeSniffer = mimeTypeSniffer;
+    this.analyzerRegistry = analyzerRegistry;
+    this.fileMover = fileMover;
+    this.moveDuration =
+        metrics.histogram("dropcatcher_move_duration", "Time spent moving a file to its target");
+  }
 
-    this.analyzers = Map.of("pdf", pdfAnalyzer);
+  public void persistPending(FileJob job) {
+    job.setEntity(persistPendingEntity(job));
   }
 
-  public void handle(Path inputFilePath) {
+  public CompletableFuture<Void> awaitStability(FileJob job) {
+    return stabilityTracker.awaitStable(job.getInputFilePath());
+  }
 
-    FileMoveEntity entity;
+  public void hash(FileJob job) {
+    var entity = job.getEntity();
+    var fileHash =
+        job.getPrecomputedHash() != null
+            ? job.getPrecomputedHash()
+            : fileHasher.sha256(job.getFilePath());
+    if (entity.getAnalyzedName() != null && !fileHash.equals(entity.getFileHash())) {
+      // The content changed since the name was checkpointed
+      entity.setAnalyzedName(null);
+      entity.setTargetDirectory(null);
+      entity.setNamingSource(null);
+    }
+    entity.setFileHash(fileHash);
     try {
-      entity = persistPendingEntity(inputFilePath);
-    } catch (Exception e) {
-      log.error("Failed to persist pending entity", e);
+      // The size recorded on detection may predate the end of the write
+      entity.setFileSize(Files.size(job.getFilePath()));
+    } catch (IOException e) {
+      throw new FileHandlingFailedException(
+          "Failed to read size of file: {}", job.getFilePath(), e);
+    }
+  }
+
+  /**
+   * Estimates the cost of analyzing the file in megabytes of content, weighted by the analyzer
+   * that will handle it. Files with a checkpointed name or without an analyzer cost nothing.
+   */
+  public double estimateAnalysisCost(FileJob job) {
+    if (job.getEntity().getAnalyzedName() != null) {
+      return 0;
+    }
+    var contentType = sniffContentType(job);
+    double weight =
+        job.getRule().allowsAnalyzer(contentType)
+            ? analyzerRegistry.find(contentType).map(FileAnalyzer::getCostWeight).orElse(0.0)
+            : 0;
+    return weight * job.getEntity().getFileSize() / BYTES_PER_MB;
+  }
+
+  public void analyze(FileJob job) {
+    var entity = job.getEntity();
+    var fileHash = entity.getFileHash();
+    if (entity.getAnalyzedName() != null) {
+      log.info(
+          "Resuming file {} with checkpointed name {}",
+          job.getInputFilePath(),
+          entity.getAnalyzedName());
+      job.setAnalysisResult(
+          Optional.of(
+              new ResumedAnalysisSuccess(
+                  fileHash, entity.getAnalyzedName(), entity.getNamingSource())));
+      return;
+    }
+    var previousFileName = findPreviousAnalyzedName(fileHash);
+    if (previousFileName.isPresent()) {
+      log.info(
+          "File {} is a duplicate of a previously analyzed file, reusing name {}",
+          job.getInputFilePath(),
+          previousFileName.get());
+      job.setAnalysisResult(
+          Optional.of(new DuplicateAnalysisSuccess(fileHash, previousFileName.get())));
       return;
     }
 
-    try {
-      waitForFileStability(inputFilePath);
-
-      String extension = extractFileExtension(inputFilePath);
-      Optional<AnalysisResult> analysisResult = analyzeFile(inputFilePath, extension);
-
-      analysisResult.ifPresentOrElse(
-          result -> {
-            switch (result) {
-              case AnalysisSuccess success -> {
-                var outputDir = configurationManager.getOutputDir();
-                moveFile(success.getAnalyzedName(), inputFilePath, outputDir);
-                entity.setStatus(FileMoveStatus.SUCCEEDED);
-                entity.setMoveCompletedAt(LocalDateTime.now());
-                entity.setTargetDirectory(outputDir.toString());
-                entity.setTargetFileName(success.getAnalyzedName());
-              }
-              case AnalysisIncomplete incomplete -> {
-                log.info("Analysis was incomplete: {}", incomplete.message());
-                entity.setErrorMessage(incomplete.message());
-                entity.setErrorCode(ErrorCode.ANALYSIS_INCOMPLETE);
-                entity.setStatus(FileMoveStatus.MOVE_FAILED);
-              }
-              case AnalysisFailure failure -> {
-                log.error("File analysis failed: {}", failure.reason(), failure.cause());
-                entity.setErrorMessage(failure.reason());
-                entity.setErrorCode(failure.code());
-                entity.setStatus(FileMoveStatus.MOVE_FAILED);
+    var contentType = sniffContentType(job);
+    job.setAnalysisResult(analyzeFile(job.getFilePath(), contentType, job.getRule()));
+    checkpoint(job);
+  }
+
+  /**
+   * Records the analyzed name before the file is moved, so that a file interrupted by a shutdown or
+   * a failed move is not analyzed again.
+   */
+  private void checkpoint(FileJob job) {
+    if (job.getAnalysisResult().orElse(null) instanceof AnalysisSuccess success) {
+      var entity = job.getEntity();
+      entity.setAnalyzedName(success.getAnalyzedName());
+      entity.setTargetDirectory(job.getRule().outputDir().toString());
+      entity.setNamingSource(success.getNamingSource());
+      fileMoveWriter.update(entity);
+    }
+  }
+
+  public void applyAnalysisResult(FileJob job) {
+    var entity = job.getEntity();
+    var filePath = job.getFilePath();
+    job.getAnalysisResult()
+        .ifPresentOrElse(
+            result -> {
+              switch (result) {
+                case AnalysisSuccess success -> {
+                  var outputDir = job.getRule().outputDir();
+                  var target = moveFile(success.getAnalyzedName(), filePath, outputDir);
+                  entity.setStatus(FileMoveStatus.SUCCEEDED);
+                  entity.setErrorCode(null);
+                  entity.setErrorMessage(null);
+                  entity.setNextAttemptAt(null);
+                  entity.setMoveCompletedAt(LocalDateTime.now());
+                  entity.setTargetDirectory(outputDir.toString());
+                  entity.setTargetFileName(target.getFileName().toString());
+                  entity.setAnalyzedName(success.getAnalyzedName());
+                  entity.setNamingSource(success.getNamingSource());
+                }
+                case AnalysisIncomplete incomplete -> {
+                  log.info("Analysis was incomplete: {}", incomplete.message());
+                  entity.setErrorMessage(incomplete.message());
+                  entity.setErrorCode(ErrorCode.ANALYSIS_INCOMPLETE);
+                  retryPolicy.markFailed(
+                      entity, FileMoveStatus.MOVE_FAILED, incomplete.retryable());
+                }
+                case AnalysisFailure failure -> {
+                  log.error("File analysis failed: {}", failure.reason(), failure.cause());
+                  entity.setErrorMessage(failure.reason());
+                  entity.setErrorCode(failure.code());
+                  retryPolicy.markFailed(
+                      entity, FileMoveStatus.MOVE_FAILED, retryPolicy.isRetryable(failure.code()));
+                }
               }
-            }
-          },
-          () -> {
-            entity.setErrorMessage("No analyzer for extension: " + extension);
-            entity.setErrorCode(ErrorCode.NO_ANALYZER_AVAILABLE);
-            entity.setStatus(FileMoveStatus.MOVE_FAILED);
-          });
-    } catch (BaseException e) {
-      entity.setErrorCode(e.getCode());
-      entity.setErrorMessage(e.getMessage());
-      entity.setStatus(FileMoveStatus.MOVE_FAILED);
-      throw e;
-    } catch (Exception e) {
+            },
+            () -> {
+              entity.setErrorMessage("No analyzer for content type: " + job.getContentType());
+              entity.setErrorCode(ErrorCode.NO_ANALYZER_AVAILABLE);
+              entity.setStatus(FileMoveStatus.MOVE_FAILED);
+            });
+  }
+
+  public void recordFailure(FileJob job, Throwable e) {
+    var entity = job.getEntity();
+    if (e instanceof BaseException be) {
+      entity.setErrorCode(be.getCode());
+      entity.setErrorMessage(be.getMessage());
+      retryPolicy.markFailed(
+          entity, FileMoveStatus.MOVE_FAILED, retryPolicy.isRetryable(be.getCode()));
+    } else {
       entity.setErrorMessage(e.getMessage());
-      entity.setStatus(FileMoveStatus.MOVE_FAILED_UNEXPECTED_ERROR);
-      throw e;
-    } finally {
-      sessionFactory.inTransaction((session) -> session.merge(entity));
+      retryPolicy.markFailed(entity, FileMoveStatus.MOVE_FAILED_UNEXPECTED_ERROR, true);
     }
   }
 
-  private FileMoveEntity persistPendingEntity(Path inputFilePath) {
+  public void persist(FileJob job) {
+    fileMoveWriter.update(job.getEntity());
+  }
+
+  private FileMoveEntity persistPendingEntity(FileJob job) {
+    var inputFilePath = job.getInputFilePath();
+    var filePath = job.getFilePath();
     BasicFileAttributes attrs;
     try {
-      attrs = Files.readAttributes(inputFilePath, BasicFileAttributes.class);
+      attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
     } catch (Exception e) {
-      log.error("Could not retrieve file attributes: {}", inputFilePath, e);
+      log.error("Could not retrieve file attributes: {}", filePath, e);
       throw new RuntimeException(e);
     }
     FileMoveEntity entity =
         FileMoveEntity.builder()
+            .id(job.getId())
             .sourceDirectory(inputFilePath.getParent().toString())
             .sourceFileName(inputFilePath.getFileName().toString())
             .fileSize(attrs.size())
-            .fileHash("TODO")
             .status(FileMoveStatus.PENDING)
             .createdAt(LocalDateTime.now())
             .build();
-    return sessionFactory.fromTransaction(
-        (session) -> {
-          session.persist(entity);
-          return entity;
-        });
+    fileMoveWriter.insert(entity);
+    return entity;
+  }
+
+  private String sniffContentType(FileJob job) {
+    if (job.getContentType() == null) {
+      job.setContentType(
+          mimeTypeSniffer.sniff(
+              job.getFilePath(), extractFileExtension(job.getFilePath())));
+    }
+    return job.getContentType();
   }
 
-  private Optional<AnalysisResult> analyzeFile(Path filePath, String extension) {
-    var analyzer = analyzers.get(extension.toLowerCase());
+  /**
+   * Finds the name a file with the same content was analyzed to. Moves are written behind, so the
+   * writes that are not committed yet are checked before the database.
+   */
+  private Optional<String> findPreviousAnalyzedName(String fileHash) {
+    if (fileHash == null) {
+      return Optional.empty();
+    }
+    var pendingName = fileMoveWriter.findPendingAnalyzedName(fileHash);
+    if (pendingName.isPresent()) {
+      return pendingName;
+    }
+    return sessionFactory.get().fromTransaction(
+        (session) ->
+            session
+                .createSelectionQuery(
+                    "select f.analyzedName from FileMoveEntity f"
+                        + " where f.fileHash = :fileHash and f.status = :status"
+                        + " order by f.moveCompletedAt desc",
+                    String.class)
+                .setParameter("fileHash", fileHash)
+                .setParameter("status", FileMoveStatus.SUCCEEDED)
+                .setMaxResults(1)
+                .uniqueResultOptional());
+  }
+
+  private Optional<AnalysisResult> analyzeFile(
+      Path filePath, String contentType, WatchRule rule) {
+    Optional<FileAnalyzer> analyzer =
+        rule.allowsAnalyzer(contentType) ? analyzerRegistry.find(contentType) : Optional.empty();
 
-    if (analyzer == null) {
-      log.info("No analyzer for extension: {}. Skipping analysis", extension);
+    if (analyzer.isEmpty()) {
+      log.info("No analyzer for content type: {}. Skipping analysis", contentType);
       return Optional.empty();
     }
 
-    return Optional.of(analyzer.analyze(filePath.toFile()));
+    return Optional.of(analyzerRegistry.analyze(analyzer.get(), filePath.toFile()));
   }
 
-  private static @NonNull String extractFileExtension(Path inputFilePath) {
+  static @NonNull String extractFileExtension(Path inputFilePath) {
     String extension = "";
     String fileName = inputFilePath.getFileName().toString();
     int lastDot = fileName.lastIndexOf('.');
@@ -154,50 +300,12 @@ public class FileHandler {
     return extension;
   }
 
-  private void moveFile(String newFileName, Path inputFilePath, Path outputDir) {
+  private Path moveFile(String newFileName, Path inputFilePath, Path outputDir) {
+    long start = System.nanoTime();
     try {
-      Path outputPath = outputDir.resolve(newFileName);
-      Files.move(inputFilePath, outputPath, StandardCopyOption.REPLACE_EXISTING);
-    } catch (Exception e) {
-      throw new FileMoveException(
-          "Failed to copy file to the output directory " + inputFilePath, e);
-    }
-  }
-
-  private void waitForFileStability(Path inputFilePath) {
-    int totalChecks = 0;
-    int constantChecks = 0;
-    var prevSize = -1L;
-    long currentInterval = CHECK_INTERVAL_MS;
-    while (true) {
-      if (totalChecks == MAX_CHECKS) {
-        throw new StabilityChecksExceededException(
-            "Total checks exceeded for file: {}", inputFilePath);
-      }
-      try {
-        long fileSize = Files.size(inputFilePath);
-        if (prevSize != fileSize) {
-          constantChecks = 0;
-          prevSize = fileSize;
-          currentInterval = CHECK_INTERVAL_MS;
-        } else {
-          constantChecks++;
-          if (constantChecks >= 3) {
-            break;
-          }
-          currentInterval = Math.min((long) (currentInterval * 1.5), MAX_INTERVAL_MS);
-        }
-        totalChecks++;
-        log.info("Sleep with interval {}", currentInterval);
-        Thread.sleep(currentInterval);
-      } catch (Exception e) {
-        if (e instanceof InterruptedException) {
-          Thread.currentThread().interrupt();
-        }
-        throw new FileHandlingFailedException(
-            "Exception during file stability check for file: {}", inputFilePath, e);
-      }
+      return fileMover.move(inputFilePath, outputDir, newFileName);
+    } finally {
+      moveDuration.recordSince(start);
     }
-    log.info("File stable: {}", inputFilePath);
   }
 }
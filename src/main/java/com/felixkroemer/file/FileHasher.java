@@ -0,0 +1,39 @@
+package com.felixkroemer.file;
+
+import com.felixkroemer.file.error.FileHandlingFailedException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import javax.inject.Inject;
+
+public class FileHasher {
+
+  private static final int CHUNK_SIZE = 1024 * 1024;
+
+  /** Hashing runs on a small pool of platform threads, each keeps its buffer. */
+  private static final ThreadLocal<ByteBuffer> BUFFER =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_SIZE));
+
+  @Inject
+  public FileHasher() {}
+
+  public String sha256(Path path) {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var digest = MessageDigest.getInstance("SHA-256");
+      var buffer = BUFFER.get().clear();
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (IOException | NoSuchAlgorithmException e) {
+      throw new FileHandlingFailedException("Failed to hash file: {}", path, e);
+    }
+  }
+}
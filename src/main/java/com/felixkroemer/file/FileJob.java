@@ -0,0 +1,42 @@
+package com.felixkroemer.file;
+
+import com.felixkroemer.analysis.result.AnalysisResult;
+import com.felixkroemer.config.WatchRule;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class FileJob {
+
+  /** Id of the file_move row, known before the row is recorded so it can name the claimed copy. */
+  private final UUID id;
+  private final Path inputFilePath;
+  private final WatchRule rule;
+  private final long submittedAtNanos = System.nanoTime();
+  private final CompletableFuture<FileJob> completion = new CompletableFuture<>();
+  private Path claimedPath;
+  private String precomputedHash;
+  private FileMoveEntity entity;
+  private String contentType;
+  private Optional<AnalysisResult> analysisResult = Optional.empty();
+
+  public FileJob(Path inputFilePath, WatchRule rule) {
+    this(UUID.randomUUID(), inputFilePath, rule);
+  }
+
+  public FileJob(UUID id, Path inputFilePath, WatchRule rule) {
+    this.id = id;
+    this.inputFilePath = inputFilePath;
+    this.rule = rule;
+  }
+
+  /** Where the content is read from, the claimed copy once the file was claimed. */
+  public Path getFilePath() {
+    return claimedPath != null ? claimedPath : inputFilePath;
+  }
+}
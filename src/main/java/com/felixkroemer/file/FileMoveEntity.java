@@ -5,6 +5,7 @@ import com.felixkroemer.file.error.FileMoveStatus;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
@@ -15,13 +16,14 @@ import java.util.UUID;
 @Table(name = "file_move")
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
+@Getter
 @Setter
 public class FileMoveEntity {
     
     @Id
-    @GeneratedValue
-    private UUID id;
+    @Builder.Default
+    private UUID id = UUID.randomUUID();
 
     @Column(nullable = false)
     @Convert(converter = LocalDateTimeConverter.class)
@@ -37,6 +39,11 @@ public class FileMoveEntity {
 
     private String targetDirectory;
 
+    /** The name analysis produced, before a suffix was added to avoid a collision. */
+    private String analyzedName;
+
+    private String namingSource;
+
     @Column(name = "file_hash", length = 64)
     private String fileHash;
 
@@ -54,4 +61,10 @@ public class FileMoveEntity {
     
     @Column(nullable = false)
     private long fileSize;
+
+    @Column(nullable = false)
+    private int attemptCount;
+
+    @Convert(converter = LocalDateTimeConverter.class)
+    private LocalDateTime nextAttemptAt;
 }
@@ -0,0 +1,181 @@
+package com.felixkroemer.file;
+
+import static com.felixkroemer.config.ConfigurationManager.DB_BATCH_SIZE;
+import static com.felixkroemer.config.ConfigurationManager.DB_FLUSH_INTERVAL_MS;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.file.error.FileMoveStatus;
+import com.felixkroemer.metrics.Counter;
+import com.felixkroemer.metrics.Histogram;
+import com.felixkroemer.metrics.Metrics;
+import dagger.Lazy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+/**
+ * Write-behind persistence for {@link FileMoveEntity}. Inserts and updates are snapshotted when
+ * they are enqueued, coalesced per entity id and written in one batched transaction once the batch
+ * is full or the flush interval has elapsed.
+ */
+@Slf4j
+@Singleton
+public class FileMoveWriter {
+
+  private final Lazy<SessionFactory> sessionFactory;
+  private final ScheduledExecutorService flusher;
+  private final int batchSize;
+
+  private final Object lock = new Object();
+  private Map<UUID, PendingWrite> pending = new LinkedHashMap<>();
+  private Collection<PendingWrite> flushing = List.of();
+  private boolean flushScheduled;
+
+  private record PendingWrite(FileMoveEntity snapshot, boolean insert) {}
+
+  private final Histogram flushDuration;
+  private final Counter rowsWritten;
+
+  @Inject
+  public FileMoveWriter(
+      ConfigurationManager configurationManager,
+      Lazy<SessionFactory> sessionFactory,
+      Metrics metrics) {
+    this.sessionFactory = sessionFactory;
+    this.batchSize = configurationManager.getInt(DB_BATCH_SIZE);
+    this.flusher =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("db-writer").daemon(true).factory());
+    long flushIntervalMs = configurationManager.getInt(DB_FLUSH_INTERVAL_MS);
+    flusher.scheduleWithFixedDelay(
+        this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    this.flushDuration =
+        metrics.histogram("dropcatcher_db_flush_duration", "Time spent writing one batch of rows");
+    this.rowsWritten =
+        metrics.counter("dropcatcher_db_rows_written_total", "File move rows written");
+    metrics.gauge(
+        "dropcatcher_db_pending_writes", "Row writes waiting to be flushed", this::getPendingCount);
+  }
+
+  public void insert(FileMoveEntity entity) {
+    enqueue(entity, true);
+  }
+
+  public void update(FileMoveEntity entity) {
+    enqueue(entity, false);
+  }
+
+  private void enqueue(FileMoveEntity entity, boolean insert) {
+    var snapshot = entity.toBuilder().build();
+    synchronized (lock) {
+      var previous = pending.get(entity.getId());
+      boolean pendingInsert = insert || (previous != null && previous.insert());
+      pending.put(entity.getId(), new PendingWrite(snapshot, pendingInsert));
+      if (pending.size() >= batchSize && !flushScheduled) {
+        flushScheduled = true;
+        flusher.execute(this::flush);
+      }
+    }
+  }
+
+  public void flush() {
+    Collection<PendingWrite> batch;
+    synchronized (lock) {
+      flushScheduled = false;
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = pending.values();
+      pending = new LinkedHashMap<>();
+      flushing = batch;
+    }
+    long start = System.nanoTime();
+    try {
+      sessionFactory.get().inStatelessTransaction(
+          (session) -> {
+            session.setJdbcBatchSize(batchSize);
+            batch.forEach(write -> write(session, write));
+          });
+      rowsWritten.add(batch.size());
+      log.debug("Flushed {} file move writes", batch.size());
+    } catch (Exception e) {
+      log.error("Batched write of {} file moves failed, writing individually", batch.size(), e);
+      writeIndividually(batch);
+    } finally {
+      synchronized (lock) {
+        flushing = List.of();
+      }
+      flushDuration.recordSince(start);
+    }
+  }
+
+  /**
+   * Finds the analyzed name of a succeeded move with the given hash among the writes that are not
+   * committed yet, the latest move first.
+   */
+  public Optional<String> findPendingAnalyzedName(String fileHash) {
+    synchronized (lock) {
+      return Stream.concat(pending.values().stream(), flushing.stream())
+          .map(PendingWrite::snapshot)
+          .filter(
+              (snapshot) ->
+                  snapshot.getStatus() == FileMoveStatus.SUCCEEDED
+                      && snapshot.getAnalyzedName() != null
+                      && fileHash.equals(snapshot.getFileHash()))
+          .max(
+              Comparator.comparing(
+                  FileMoveEntity::getMoveCompletedAt,
+                  Comparator.nullsFirst(Comparator.naturalOrder())))
+          .map(FileMoveEntity::getAnalyzedName);
+    }
+  }
+
+  public int getPendingCount() {
+    synchronized (lock) {
+      return pending.size();
+    }
+  }
+
+  private void writeIndividually(Collection<PendingWrite> batch) {
+    for (var write : new ArrayList<>(batch)) {
+      try {
+        sessionFactory.get().inStatelessTransaction((session) -> write(session, write));
+        rowsWritten.increment();
+      } catch (Exception e) {
+        log.error("Failed to write file move {}", write.snapshot().getId(), e);
+      }
+    }
+  }
+
+  private static void write(StatelessSession session, PendingWrite write) {
+    if (write.insert()) {
+      session.insert(write.snapshot());
+    } else {
+      session.update(write.snapshot());
+    }
+  }
+
+  public void close() {
+    flusher.shutdown();
+    try {
+      flusher.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+}
@@ -0,0 +1,139 @@
+package com.felixkroemer.file;
+
+import com.felixkroemer.file.error.FileMoveException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves files into an output directory without ever replacing an existing file. Within one file
+ * system the file is linked or renamed into place. Across file systems it is copied with {@link
+ * FileChannel#transferTo} into a hidden temp file next to the target, synced and then published
+ * under its final name, so a partially copied file is never visible.
+ */
+@Slf4j
+public class FileMover {
+
+  private static final int MAX_NAME_SUFFIX = 1000;
+  private static final String TEMP_PREFIX = ".dropcatcher-";
+  private static final String TEMP_SUFFIX = ".part";
+
+  @Inject
+  public FileMover() {}
+
+  /**
+   * Moves the source into the target directory under the given name, appending {@code _1},
+   * {@code _2}, ... to the name if it is taken.
+   *
+   * @return the path the file ended up at
+   */
+  public Path move(Path source, Path targetDir, String fileName) {
+    try {
+      Files.createDirectories(targetDir);
+      if (isSameFileStore(source, targetDir)) {
+        return publish(source, targetDir, fileName);
+      }
+      log.debug("Moving {} across file systems to {}", source, targetDir);
+      return copyAndPublish(source, targetDir, fileName);
+    } catch (IOException e) {
+      throw new FileMoveException(
+          "Failed to move file " + source + " to the output directory " + targetDir, e);
+    }
+  }
+
+  /** The cross file system move: copy to a temp file, publish it, then delete the source. */
+  static Path copyAndPublish(Path source, Path targetDir, String fileName) throws IOException {
+    var temp = copyToTemp(source, targetDir);
+    Path target;
+    try {
+      target = publish(temp, targetDir, fileName);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    syncDirectory(targetDir);
+    Files.delete(source);
+    return target;
+  }
+
+  private static Path publish(Path file, Path targetDir, String fileName) throws IOException {
+    for (int suffix = 0; suffix <= MAX_NAME_SUFFIX; suffix++) {
+      var candidate = targetDir.resolve(withSuffix(fileName, suffix));
+      if (tryPublish(file, candidate)) {
+        if (suffix > 0) {
+          log.info("{} already exists, stored as {}", fileName, candidate.getFileName());
+        }
+        return candidate;
+      }
+    }
+    throw new FileAlreadyExistsException(
+        targetDir.resolve(fileName).toString(), null, "No free name after " + MAX_NAME_SUFFIX);
+  }
+
+  /**
+   * Gives the file its final name unless the name is taken. A hard link fails atomically if the
+   * name exists; where links are not supported a rename without replace is used instead.
+   */
+  private static boolean tryPublish(Path file, Path candidate) throws IOException {
+    try {
+      Files.createLink(candidate, file);
+    } catch (FileAlreadyExistsException e) {
+      return false;
+    } catch (UnsupportedOperationException | FileSystemException e) {
+      try {
+        Files.move(file, candidate);
+        return true;
+      } catch (FileAlreadyExistsException alreadyExists) {
+        return false;
+      }
+    }
+    Files.delete(file);
+    return true;
+  }
+
+  private static Path copyToTemp(Path source, Path targetDir) throws IOException {
+    var temp = Files.createTempFile(targetDir, TEMP_PREFIX, TEMP_SUFFIX);
+    try (var in = FileChannel.open(source, StandardOpenOption.READ);
+        var out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+      long size = in.size();
+      long position = 0;
+      while (position < size) {
+        position += in.transferTo(position, size - position, out);
+      }
+      out.force(true);
+    } catch (IOException e) {
+      Files.deleteIfExists(temp);
+      throw e;
+    }
+    return temp;
+  }
+
+  /** Makes the new directory entry durable. Not every platform allows opening a directory. */
+  private static void syncDirectory(Path directory) {
+    try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      log.debug("Could not sync directory {}", directory, e);
+    }
+  }
+
+  private static boolean isSameFileStore(Path source, Path targetDir) throws IOException {
+    return Files.getFileStore(source).equals(Files.getFileStore(targetDir));
+  }
+
+  static String withSuffix(String fileName, int suffix) {
+    if (suffix == 0) {
+      return fileName;
+    }
+    int lastDot = fileName.lastIndexOf('.');
+    if (lastDot <= 0) {
+      return fileName + "_" + suffix;
+    }
+    return fileName.substring(0, lastDot) + "_" + suffix + fileName.substring(lastDot);
+  }
+}
@@ -0,0 +1,138 @@
+package com.felixkroemer.file;
+
+import static com.felixkroemer.config.ConfigurationManager.STABILITY_QUIET_PERIOD_MS;
+import static com.felixkroemer.config.ConfigurationManager.STABILITY_TIMEOUT_MS;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.file.error.FileHandlingFailedException;
+import com.felixkroemer.file.error.StabilityChecksExceededException;
+import com.felixkroemer.metrics.Histogram;
+import com.felixkroemer.metrics.Metrics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tracks files that are still being written. A file is considered stable once no watch event was
+ * seen for it during the quiet period and its size did not change in the meantime. All pending
+ * files share a single scheduler thread, no thread is parked per file.
+ */
+@Slf4j
+@Singleton
+public class StabilityTracker {
+
+  private final ConcurrentHashMap<Path, PendingFile> pending = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService scheduler;
+  private final long quietPeriodNanos;
+  private final long timeoutNanos;
+
+  private final Histogram stabilityWait;
+
+  @Inject
+  public StabilityTracker(ConfigurationManager configurationManager, Metrics metrics) {
+    this.quietPeriodNanos =
+        TimeUnit.MILLISECONDS.toNanos(configurationManager.getInt(STABILITY_QUIET_PERIOD_MS));
+    this.timeoutNanos =
+        TimeUnit.MILLISECONDS.toNanos(configurationManager.getInt(STABILITY_TIMEOUT_MS));
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("stability").daemon(true).factory());
+    this.stabilityWait =
+        metrics.histogram("dropcatcher_stability_wait", "Time until a new file stopped changing");
+    metrics.gauge(
+        "dropcatcher_stability_pending", "Files waiting to become stable", pending::size);
+  }
+
+  public CompletableFuture<Void> awaitStable(Path path) {
+    var tracked =
+        pending.computeIfAbsent(
+            path,
+            p -> {
+              var pendingFile = new PendingFile(p, System.nanoTime());
+              try {
+                pendingFile.lastSize = Files.size(p);
+              } catch (IOException e) {
+                pendingFile.future.completeExceptionally(
+                    new FileHandlingFailedException(
+                        "Exception during file stability check for file: {}", p, e));
+                return pendingFile;
+              }
+              schedule(pendingFile, quietPeriodNanos);
+              return pendingFile;
+            });
+    return tracked.future.whenComplete((ignored, e) -> pending.remove(path, tracked));
+  }
+
+  public void touch(Path path) {
+    var pendingFile = pending.get(path);
+    if (pendingFile != null) {
+      pendingFile.lastEventNanos = System.nanoTime();
+    }
+  }
+
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  private void schedule(PendingFile pendingFile, long delayNanos) {
+    scheduler.schedule(() -> check(pendingFile), delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private void check(PendingFile pendingFile) {
+    long now = System.nanoTime();
+    if (now - pendingFile.trackedSinceNanos > timeoutNanos) {
+      pendingFile.future.completeExceptionally(
+          new StabilityChecksExceededException(
+              "Stability timeout exceeded for file: {}", pendingFile.path));
+      return;
+    }
+
+    long quietFor = now - pendingFile.lastEventNanos;
+    if (quietFor < quietPeriodNanos) {
+      schedule(pendingFile, quietPeriodNanos - quietFor);
+      return;
+    }
+
+    long size;
+    try {
+      size = Files.size(pendingFile.path);
+    } catch (IOException e) {
+      pendingFile.future.completeExceptionally(
+          new FileHandlingFailedException(
+              "Exception during file stability check for file: {}", pendingFile.path, e));
+      return;
+    }
+    if (size != pendingFile.lastSize) {
+      pendingFile.lastSize = size;
+      pendingFile.lastEventNanos = now;
+      schedule(pendingFile, quietPeriodNanos);
+      return;
+    }
+
+    log.info("File stable: {}", pendingFile.path);
+    stabilityWait.recordSince(pendingFile.trackedSinceNanos);
+    pendingFile.future.complete(null);
+  }
+
+  private static class PendingFile {
+    private final Path path;
+    private final long trackedSinceNanos;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private volatile long lastEventNanos;
+    private long lastSize;
+
+    private PendingFile(Path path, long trackedSinceNanos) {
+      this.path = path;
+      this.trackedSinceNanos = trackedSinceNanos;
+      this.lastEventNanos = trackedSinceNanos;
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package com.felixkroemer.file.error;
+
+import com.felixkroemer.common.ErrorCode;
+
+public class FileClaimLostException extends FileHandlingFailedException {
+  public FileClaimLostException(String message, Object param1) {
+    super(ErrorCode.FILE_CLAIM_LOST, message, param1, null);
+  }
+}
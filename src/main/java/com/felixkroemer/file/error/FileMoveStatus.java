@@ -5,4 +5,6 @@ public enum FileMoveStatus {
     SUCCEEDED,
     MOVE_FAILED,
     MOVE_FAILED_UNEXPECTED_ERROR,
+    RETRY_SCHEDULED,
+    RETRYING,
 }
@@ -0,0 +1,546 @@
+package com.felixkroemer.ingest;
+
+import static com.felixkroemer.config.ConfigurationManager.INGEST_BIND_ADDRESS;
+import static com.felixkroemer.config.ConfigurationManager.INGEST_MAX_UPLOAD_MB;
+import static com.felixkroemer.config.ConfigurationManager.INGEST_PORT;
+import static com.felixkroemer.config.ConfigurationManager.INGEST_RULE;
+import static com.felixkroemer.config.ConfigurationManager.INGEST_TOKEN;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.config.WatchRule;
+import com.felixkroemer.file.FileJob;
+import com.felixkroemer.file.FileMoveEntity;
+import com.felixkroemer.file.FileMoveWriter;
+import com.felixkroemer.file.FileMover;
+import com.felixkroemer.file.error.FileMoveException;
+import com.felixkroemer.file.error.FileMoveStatus;
+import com.felixkroemer.metrics.Counter;
+import com.felixkroemer.metrics.Histogram;
+import com.felixkroemer.metrics.Metrics;
+import com.felixkroemer.pipeline.ProcessingPipeline;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dagger.Lazy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+
+/**
+ * Accepts file uploads over HTTP as an alternative to dropping files into a watched directory.
+ * The request body is streamed to a hidden file in the input directory of the ingest rule and
+ * hashed on the way, the file is then submitted to the {@link ProcessingPipeline} without waiting
+ * for it to become stable. Requests are served on virtual threads. Uploads that fail for good are
+ * moved to the {@code failed} directory of the rule's output directory, uploads left behind by a
+ * previous run are swept on start.
+ *
+ * <ul>
+ *   <li>{@code POST /files?name=<file name>} answers with the job once the file is processed, with
+ *       {@code async=true} it answers {@code 202} with the job id right away.
+ *   <li>{@code GET /jobs/<id>} reports the status of a job, the id is the id of its file_move row.
+ * </ul>
+ */
+@Slf4j
+@Singleton
+public class IngestServer {
+
+  private static final String FILES_PATH = "/files";
+  private static final String JOBS_PATH = "/jobs/";
+  private static final String UPLOAD_PREFIX = ".ingest-";
+  private static final int UPLOAD_ID_LENGTH = 36;
+  private static final String PARTIAL_SUFFIX = ".part";
+  private static final String FAILED_DIRECTORY = "failed";
+  private static final List<FileMoveStatus> OPEN_STATUSES =
+      List.of(FileMoveStatus.PENDING, FileMoveStatus.RETRY_SCHEDULED, FileMoveStatus.RETRYING);
+  private static final int CHUNK_SIZE = 256 * 1024;
+  private static final long BYTES_PER_MB = 1024 * 1024;
+  private static final int MAX_REMEMBERED_JOBS = 1000;
+
+  private final ConfigurationManager configurationManager;
+  private final ProcessingPipeline pipeline;
+  private final Lazy<SessionFactory> sessionFactory;
+  private final FileMover fileMover;
+  private final FileMoveWriter fileMoveWriter;
+  private final int port;
+  private final String bindAddress;
+  private final byte[] token;
+  private final long maxUploadBytes;
+
+  private final Map<UUID, FileJob> recentJobs =
+      new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, FileJob> eldest) {
+          return size() > MAX_REMEMBERED_JOBS;
+        }
+      };
+
+  private final Counter uploadedBytes;
+  private final Histogram uploadDuration;
+
+  private HttpServer server;
+  private ExecutorService executor;
+
+  @Inject
+  public IngestServer(
+      ConfigurationManager configurationManager,
+      ProcessingPipeline pipeline,
+      Lazy<SessionFactory> sessionFactory,
+      FileMover fileMover,
+      FileMoveWriter fileMoveWriter,
+      Metrics metrics) {
+    this.configurationManager = configurationManager;
+    this.pipeline = pipeline;
+    this.sessionFactory = sessionFactory;
+    this.fileMover = fileMover;
+    this.fileMoveWriter = fileMoveWriter;
+    this.port = configurationManager.getInt(INGEST_PORT);
+    this.bindAddress = configurationManager.getString(INGEST_BIND_ADDRESS);
+    var configuredToken = configurationManager.getString(INGEST_TOKEN);
+    this.token =
+        configuredToken == null || configuredToken.isBlank()
+            ? null
+            : configuredToken.strip().getBytes(StandardCharsets.UTF_8);
+    this.maxUploadBytes = configurationManager.getInt(INGEST_MAX_UPLOAD_MB) * BYTES_PER_MB;
+    this.uploadedBytes =
+        metrics.counter("dropcatcher_ingest_bytes_total", "Bytes received by the upload endpoint");
+    this.uploadDuration =
+        metrics.histogram("dropcatcher_ingest_upload_duration", "Time spent receiving an upload");
+  }
+
+  public synchronized void start() {
+    if (port <= 0 || server != null) {
+      return;
+    }
+    try {
+      server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+    } catch (IOException e) {
+      log.error("Failed to start ingest endpoint on {}:{}", bindAddress, port, e);
+      return;
+    }
+    sweepLeftovers();
+    executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ingest-", 0).factory());
+    server.setExecutor(executor);
+    server.createContext(FILES_PATH, this::handleUpload);
+    server.createContext(JOBS_PATH, this::handleStatus);
+    server.start();
+    log.info("Accepting uploads on http://{}:{}{}", bindAddress, port, FILES_PATH);
+  }
+
+  public synchronized void stop() {
+    if (server != null) {
+      server.stop(0);
+      executor.shutdown();
+      server = null;
+    }
+  }
+
+  private void handleUpload(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!authorize(exchange)) {
+        return;
+      }
+      if (!exchange.getRequestMethod().equals("POST")) {
+        respond(exchange, 405, error("Use POST to upload a file"));
+        return;
+      }
+      var query = parseQuery(exchange.getRequestURI().getRawQuery());
+      var fileName = sanitizeFileName(query.get("name"));
+      if (fileName.isEmpty()) {
+        respond(exchange, 400, error("The name parameter is missing or invalid"));
+        return;
+      }
+      var rule = findRule(query.get("rule"));
+      if (rule.isEmpty()) {
+        respond(exchange, 404, error("Unknown watch rule"));
+        return;
+      }
+      var contentLength = parseContentLength(exchange);
+      if (contentLength.isEmpty()) {
+        respond(exchange, 400, error("Invalid Content-Length header"));
+        return;
+      }
+      if (contentLength.getAsLong() > maxUploadBytes) {
+        respond(exchange, 413, error("Upload exceeds " + maxUploadBytes + " bytes"));
+        return;
+      }
+
+      var target =
+          rule.get().inputDir().resolve(UPLOAD_PREFIX + UUID.randomUUID() + "-" + fileName.get());
+      String fileHash;
+      try {
+        fileHash = receive(exchange.getRequestBody(), target);
+      } catch (UploadTooLargeException e) {
+        respond(exchange, 413, error("Upload exceeds " + maxUploadBytes + " bytes"));
+        return;
+      }
+
+      Optional<FileJob> submitted;
+      try {
+        submitted = pipeline.submitComplete(target, rule.get(), fileHash);
+      } catch (RuntimeException e) {
+        Files.deleteIfExists(target);
+        throw e;
+      }
+      if (submitted.isEmpty()) {
+        Files.deleteIfExists(target);
+        respond(exchange, 503, error("Not accepting uploads, shutting down"));
+        return;
+      }
+      var job = submitted.get();
+      remember(job);
+      var settled = job.getCompletion().thenAccept(this::keepIfFailed);
+      log.info("Received upload {} as job {}", fileName.get(), job.getEntity().getId());
+      if (Boolean.parseBoolean(query.get("async"))) {
+        exchange.getResponseHeaders().set("Location", JOBS_PATH + job.getEntity().getId());
+        respond(exchange, 202, toJson(job.getEntity()));
+        return;
+      }
+      settled.join();
+      respond(exchange, 200, toJson(job.getEntity()));
+    } catch (Exception e) {
+      log.error("Failed to handle upload", e);
+      respond(exchange, 500, error("Upload failed: " + e.getMessage()));
+    }
+  }
+
+  /** A missing header is reported as {@code 0}, a malformed or negative one as empty. */
+  private static OptionalLong parseContentLength(HttpExchange exchange) {
+    var header = exchange.getRequestHeaders().getFirst("Content-Length");
+    if (header == null) {
+      return OptionalLong.of(0);
+    }
+    try {
+      long length = Long.parseLong(header.strip());
+      return length < 0 ? OptionalLong.empty() : OptionalLong.of(length);
+    } catch (NumberFormatException e) {
+      return OptionalLong.empty();
+    }
+  }
+
+  /**
+   * Nobody can drop a failed upload again, unlike a file in the input directory, so once the
+   * failure is final its hidden copy is kept where the user can find it. Files scheduled for a
+   * retry stay in place.
+   */
+  private void keepIfFailed(FileJob job) {
+    var status = job.getEntity().getStatus();
+    if (status == FileMoveStatus.MOVE_FAILED
+        || status == FileMoveStatus.MOVE_FAILED_UNEXPECTED_ERROR) {
+      moveToFailed(job.getFilePath(), job.getRule(), job.getEntity());
+    }
+  }
+
+  /**
+   * Moves an upload to the {@code failed} directory of the rule's output directory under the name
+   * it was uploaded with and records that path on its row, if it has one.
+   */
+  private void moveToFailed(Path upload, WatchRule rule, FileMoveEntity entity) {
+    if (!Files.exists(upload)) {
+      return;
+    }
+    var failedDir = rule.outputDir().resolve(FAILED_DIRECTORY);
+    try {
+      var kept = fileMover.move(upload, failedDir, originalName(upload));
+      log.info("Kept failed upload {} as {}", upload, kept);
+      if (entity != null) {
+        entity.setTargetDirectory(failedDir.toString());
+        entity.setTargetFileName(kept.getFileName().toString());
+        fileMoveWriter.update(entity);
+      }
+    } catch (FileMoveException e) {
+      log.error("Failed to keep failed upload {} in {}", upload, failedDir, e);
+    }
+  }
+
+  /** The name a file was uploaded with, without the prefix and id of its staged copy. */
+  private static String originalName(Path upload) {
+    var name = upload.getFileName().toString();
+    int start = UPLOAD_PREFIX.length() + UPLOAD_ID_LENGTH + 1;
+    return name.startsWith(UPLOAD_PREFIX) && name.length() > start ? name.substring(start) : name;
+  }
+
+  /**
+   * Cleans up uploads left behind by a previous run. A body that was cut off by a crash never got a
+   * row and is deleted. Complete uploads are never deleted: those whose row is still open are
+   * picked up by their retries, the others are moved to the failed directory.
+   */
+  private void sweepLeftovers() {
+    for (var rule : configurationManager.getWatchRules()) {
+      var leftovers = new ArrayList<Path>();
+      try (DirectoryStream<Path> uploads =
+          Files.newDirectoryStream(rule.inputDir(), UPLOAD_PREFIX + "*")) {
+        for (var upload : uploads) {
+          if (upload.getFileName().toString().endsWith(PARTIAL_SUFFIX)) {
+            log.info("Deleting partial upload {}", upload);
+            Files.deleteIfExists(upload);
+          } else {
+            leftovers.add(upload);
+          }
+        }
+      } catch (IOException e) {
+        log.warn("Failed to sweep leftover uploads in {}", rule.inputDir(), e);
+        continue;
+      }
+      if (!leftovers.isEmpty()) {
+        keepLeftovers(rule, leftovers);
+      }
+    }
+  }
+
+  private void keepLeftovers(WatchRule rule, List<Path> leftovers) {
+    List<FileMoveEntity> found;
+    try {
+      found =
+          sessionFactory.get().fromTransaction(
+              (session) ->
+                  session
+                      .createSelectionQuery(
+                          "from FileMoveEntity f"
+                              + " where f.sourceDirectory = :directory"
+                              + " and f.sourceFileName in :names",
+                          FileMoveEntity.class)
+                      .setParameter("directory", rule.inputDir().toString())
+                      .setParameter(
+                          "names",
+                          leftovers.stream().map(path -> path.getFileName().toString()).toList())
+                      .getResultList());
+    } catch (Exception e) {
+      log.error("Failed to look up the rows of leftover uploads in {}", rule.inputDir(), e);
+      return;
+    }
+    var rows = new HashMap<String, FileMoveEntity>();
+    found.forEach(entity -> rows.put(entity.getSourceFileName(), entity));
+    for (var leftover : leftovers) {
+      var row = rows.get(leftover.getFileName().toString());
+      if (row == null || !OPEN_STATUSES.contains(row.getStatus())) {
+        moveToFailed(leftover, rule, row);
+      }
+    }
+  }
+
+  private void handleStatus(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!authorize(exchange)) {
+        return;
+      }
+      UUID id;
+      try {
+        id = UUID.fromString(exchange.getRequestURI().getPath().substring(JOBS_PATH.length()));
+      } catch (IllegalArgumentException e) {
+        respond(exchange, 400, error("Invalid job id"));
+        return;
+      }
+      var entity = findEntity(id);
+      if (entity.isEmpty()) {
+        respond(exchange, 404, error("Unknown job"));
+        return;
+      }
+      respond(exchange, 200, toJson(entity.get()));
+    } catch (Exception e) {
+      log.error("Failed to report job status", e);
+      respond(exchange, 500, error("Status lookup failed: " + e.getMessage()));
+    }
+  }
+
+  /**
+   * Streams the body to the target file while hashing it, so the content is read only once.
+   *
+   * @return the SHA-256 hash of the content
+   */
+  private String receive(InputStream body, Path target) throws IOException {
+    long start = System.nanoTime();
+    long received = 0;
+    var digest = sha256();
+    // Until the body is complete it is written under a name that marks it as partial
+    var partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+    try {
+      try (var in = Channels.newChannel(body);
+          var out =
+              FileChannel.open(partial, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+        var buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        while (in.read(buffer) != -1) {
+          buffer.flip();
+          received += buffer.remaining();
+          if (received > maxUploadBytes) {
+            throw new UploadTooLargeException();
+          }
+          digest.update(buffer.duplicate());
+          while (buffer.hasRemaining()) {
+            out.write(buffer);
+          }
+          buffer.clear();
+        }
+        out.force(true);
+      }
+      Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(partial);
+      throw e;
+    } finally {
+      uploadedBytes.add(received);
+      uploadDuration.recordSince(start);
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private Optional<WatchRule> findRule(String name) {
+    var rules = configurationManager.getWatchRules();
+    var ruleName = name != null ? name : configurationManager.getString(INGEST_RULE);
+    if (ruleName == null || ruleName.isBlank()) {
+      return rules.stream().findFirst();
+    }
+    return rules.stream().filter(rule -> rule.name().equals(ruleName.strip())).findFirst();
+  }
+
+  private Optional<FileMoveEntity> findEntity(UUID id) {
+    synchronized (recentJobs) {
+      var job = recentJobs.get(id);
+      if (job != null) {
+        return Optional.of(job.getEntity());
+      }
+    }
+    return Optional.ofNullable(
+        sessionFactory.get().fromTransaction(session -> session.find(FileMoveEntity.class, id)));
+  }
+
+  private void remember(FileJob job) {
+    synchronized (recentJobs) {
+      recentJobs.put(job.getEntity().getId(), job);
+    }
+  }
+
+  private boolean authorize(HttpExchange exchange) throws IOException {
+    if (token == null) {
+      return true;
+    }
+    var header = exchange.getRequestHeaders().getFirst("Authorization");
+    var presented =
+        header != null && header.startsWith("Bearer ")
+            ? header.substring("Bearer ".length()).strip().getBytes(StandardCharsets.UTF_8)
+            : new byte[0];
+    if (MessageDigest.isEqual(token, presented)) {
+      return true;
+    }
+    respond(exchange, 401, error("Missing or invalid token"));
+    return false;
+  }
+
+  /** Only the last path element is kept, hidden names are rejected. */
+  private static Optional<String> sanitizeFileName(String name) {
+    if (name == null) {
+      return Optional.empty();
+    }
+    var fileName = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+    if (fileName.isBlank() || fileName.startsWith(".") || fileName.indexOf('\0') >= 0) {
+      return Optional.empty();
+    }
+    return Optional.of(fileName.strip());
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) {
+    var query = new HashMap<String, String>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (var parameter : rawQuery.split("&")) {
+      int separator = parameter.indexOf('=');
+      var key = separator < 0 ? parameter : parameter.substring(0, separator);
+      var value = separator < 0 ? "" : parameter.substring(separator + 1);
+      query.put(
+          URLDecoder.decode(key, StandardCharsets.UTF_8),
+          URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+    return query;
+  }
+
+  private static String toJson(FileMoveEntity entity) {
+    var json = new StringBuilder("{");
+    field(json, "id", entity.getId().toString());
+    field(json, "status", entity.getStatus().name());
+    field(json, "sourceFileName", entity.getSourceFileName());
+    field(json, "targetDirectory", entity.getTargetDirectory());
+    field(json, "targetFileName", entity.getTargetFileName());
+    field(json, "namingSource", entity.getNamingSource());
+    field(json, "errorCode", entity.getErrorCode() != null ? entity.getErrorCode().name() : null);
+    field(json, "errorMessage", entity.getErrorMessage());
+    json.setLength(json.length() - 1);
+    return json.append('}').toString();
+  }
+
+  private static String error(String message) {
+    var json = new StringBuilder("{");
+    field(json, "error", message);
+    json.setLength(json.length() - 1);
+    return json.append('}').toString();
+  }
+
+  private static void field(StringBuilder json, String name, String value) {
+    json.append('"').append(name).append("\":");
+    if (value == null) {
+      json.append("null,");
+      return;
+    }
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"' -> json.append("\\\"");
+        case '\\' -> json.append("\\\\");
+        case '\n' -> json.append("\\n");
+        case '\r' -> json.append("\\r");
+        case '\t' -> json.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+        }
+      }
+    }
+    json.append("\",");
+  }
+
+  private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+    var body = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, body.length);
+    exchange.getResponseBody().write(body);
+  }
+
+  private static class UploadTooLargeException extends IOException {}
+}
@@ -0,0 +1,30 @@
+package com.felixkroemer.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+@Getter
+public final class Counter implements Metric, CounterMBean {
+
+  private final String name;
+  private final String help;
+  private final LongAdder count = new LongAdder();
+
+  Counter(String name, String help) {
+    this.name = name;
+    this.help = help;
+  }
+
+  public void increment() {
+    count.increment();
+  }
+
+  public void add(long amount) {
+    count.add(amount);
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+}
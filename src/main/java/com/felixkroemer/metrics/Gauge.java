@@ -0,0 +1,23 @@
+package com.felixkroemer.metrics;
+
+import java.util.function.LongSupplier;
+import lombok.Getter;
+
+@Getter
+public final class Gauge implements Metric, GaugeMBean {
+
+  private final String name;
+  private final String help;
+  private final LongSupplier value;
+
+  Gauge(String name, String help, LongSupplier value) {
+    this.name = name;
+    this.help = help;
+    this.value = value;
+  }
+
+  @Override
+  public long getValue() {
+    return value.getAsLong();
+  }
+}
@@ -0,0 +1,5 @@
+package com.felixkroemer.metrics;
+
+public interface GaugeMBean {
+  long getValue();
+}
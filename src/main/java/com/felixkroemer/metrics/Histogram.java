@@ -0,0 +1,127 @@
+package com.felixkroemer.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+/**
+ * Latency histogram in nanoseconds with log-linear buckets: every power of two is split into
+ * {@value #SUB_BUCKETS} linear sub-buckets, so quantiles are accurate to about 3% over the whole
+ * range at a fixed memory cost and recording never allocates or locks.
+ */
+public final class Histogram implements Metric, HistogramMBean {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  @Getter private final String name;
+  @Getter private final String help;
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  Histogram(String name, String help) {
+    this.name = name;
+    this.help = help;
+  }
+
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    buckets.incrementAndGet(indexOf(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getSumNanos() {
+    return sum.sum();
+  }
+
+  public long getMaxNanos() {
+    return max.get();
+  }
+
+  /** Value at the given quantile, e.g. 0.99, in nanoseconds. */
+  public long quantileNanos(double quantile) {
+    long total = 0;
+    var snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = buckets.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(valueOf(i), getMaxNanos());
+      }
+    }
+    return getMaxNanos();
+  }
+
+  @Override
+  public double getMeanMillis() {
+    long n = getCount();
+    return n == 0 ? 0 : toMillis(getSumNanos()) / n;
+  }
+
+  @Override
+  public double getP50Millis() {
+    return toMillis(quantileNanos(0.5));
+  }
+
+  @Override
+  public double getP90Millis() {
+    return toMillis(quantileNanos(0.9));
+  }
+
+  @Override
+  public double getP99Millis() {
+    return toMillis(quantileNanos(0.99));
+  }
+
+  @Override
+  public double getMaxMillis() {
+    return toMillis(getMaxNanos());
+  }
+
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int mantissa = (int) (value >>> shift);
+    return (shift + 1) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+  }
+
+  /** Midpoint of the bucket at the given index. */
+  static long valueOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long mantissa = index % SUB_BUCKETS + SUB_BUCKETS;
+    return (mantissa << shift) + ((1L << shift) >> 1);
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,15 @@
+package com.felixkroemer.metrics;
+
+public interface HistogramMBean {
+  long getCount();
+
+  double getMeanMillis();
+
+  double getP50Millis();
+
+  double getP90Millis();
+
+  double getP99Millis();
+
+  double getMaxMillis();
+}
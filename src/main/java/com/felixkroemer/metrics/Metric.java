@@ -0,0 +1,7 @@
+package com.felixkroemer.metrics;
+
+public sealed interface Metric permits Counter, Gauge, Histogram {
+  String getName();
+
+  String getHelp();
+}
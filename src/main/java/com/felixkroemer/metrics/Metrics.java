@@ -0,0 +1,75 @@
+package com.felixkroemer.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registry for the application's counters, gauges and latency histograms. Every metric is also
+ * registered as an MBean under {@value #JMX_DOMAIN}.
+ */
+@Slf4j
+@Singleton
+public class Metrics {
+
+  private static final String JMX_DOMAIN = "com.felixkroemer.dropcatcher";
+
+  private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+  @Inject
+  public Metrics() {}
+
+  public Counter counter(String name, String help) {
+    return register(new Counter(name, help), Counter.class);
+  }
+
+  public Histogram histogram(String name, String help) {
+    return register(new Histogram(name, help), Histogram.class);
+  }
+
+  public void gauge(String name, String help, LongSupplier value) {
+    register(new Gauge(name, help, value), Gauge.class);
+  }
+
+  public Collection<Metric> getMetrics() {
+    return metrics.values();
+  }
+
+  private <T extends Metric> T register(T metric, Class<T> type) {
+    var existing = metrics.putIfAbsent(metric.getName(), metric);
+    if (existing != null) {
+      if (!type.isInstance(existing)) {
+        throw new IllegalArgumentException(
+            "Metric " + metric.getName() + " is already registered as " + existing.getClass());
+      }
+      return type.cast(existing);
+    }
+    registerMBean(metric, type.getSimpleName());
+    return metric;
+  }
+
+  private static void registerMBean(Metric metric, String type) {
+    var server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      var objectName =
+          new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + metric.getName());
+      try {
+        server.registerMBean(metric, objectName);
+      } catch (InstanceAlreadyExistsException e) {
+        // A previous registry in the same JVM, replace its MBean
+        server.unregisterMBean(objectName);
+        server.registerMBean(metric, objectName);
+      }
+    } catch (JMException e) {
+      log.warn("Failed to register MBean for metric {}", metric.getName(), e);
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package com.felixkroemer.metrics;
+
+import static com.felixkroemer.config.ConfigurationManager.METRICS_PORT;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves all metrics in the Prometheus text format on {@code /metrics} of the loopback interface.
+ * Histograms are exported as summaries in seconds.
+ */
+@Slf4j
+@Singleton
+public class PrometheusExporter {
+
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+  private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+  private final Metrics metrics;
+  private final int port;
+  private HttpServer server;
+
+  @Inject
+  public PrometheusExporter(Metrics metrics, ConfigurationManager configurationManager) {
+    this.metrics = metrics;
+    this.port = configurationManager.getInt(METRICS_PORT);
+  }
+
+  public synchronized void start() {
+    if (port <= 0 || server != null) {
+      return;
+    }
+    try {
+      server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    } catch (IOException e) {
+      log.error("Failed to start metrics endpoint on port {}", port, e);
+      return;
+    }
+    server.setExecutor(
+        Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("metrics-http").daemon(true).factory()));
+    server.createContext("/metrics", this::handle);
+    server.start();
+    log.info("Serving metrics on http://localhost:{}/metrics", port);
+  }
+
+  public synchronized void stop() {
+    if (server != null) {
+      server.stop(0);
+      server = null;
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      var body = render().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+    }
+  }
+
+  String render() {
+    var out = new StringBuilder();
+    for (var metric : metrics.getMetrics()) {
+      switch (metric) {
+        case Counter counter -> {
+          header(out, counter.getName(), counter.getHelp(), "counter");
+          sample(out, counter.getName(), "", counter.getCount());
+        }
+        case Gauge gauge -> {
+          header(out, gauge.getName(), gauge.getHelp(), "gauge");
+          sample(out, gauge.getName(), "", gauge.getValue());
+        }
+        case Histogram histogram -> {
+          var name = histogram.getName() + "_seconds";
+          header(out, name, histogram.getHelp(), "summary");
+          for (double quantile : QUANTILES) {
+            sample(
+                out,
+                name,
+                "{quantile=\"" + quantile + "\"}",
+                histogram.quantileNanos(quantile) / NANOS_PER_SECOND);
+          }
+          sample(out, name + "_sum", "", histogram.getSumNanos() / NANOS_PER_SECOND);
+          sample(out, name + "_count", "", histogram.getCount());
+        }
+      }
+    }
+    return out.toString();
+  }
+
+  private static void header(StringBuilder out, String name, String help, String type) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(StringBuilder out, String name, String labels, double value) {
+    out.append(name)
+        .append(labels)
+        .append(' ')
+        .append(String.format(Locale.ROOT, "%.9g", value))
+        .append('\n');
+  }
+
+  private static void sample(StringBuilder out, String name, String labels, long value) {
+    out.append(name).append(labels).append(' ').append(value).append('\n');
+  }
+}
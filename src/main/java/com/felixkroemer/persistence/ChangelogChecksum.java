@@ -0,0 +1,90 @@
+package com.felixkroemer.persistence;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * SHA-256 over every file of the bundled Liquibase changelog, stored in a marker file next to the
+ * database after a successful migration. As long as the marker matches, Liquibase does not need
+ * to be started at all.
+ */
+@Slf4j
+public final class ChangelogChecksum {
+
+  private static final String CHANGELOG_DIRECTORY = "db/changelog";
+
+  private ChangelogChecksum() {}
+
+  public static Path markerFile(Path databaseFile) {
+    return databaseFile.resolveSibling(databaseFile.getFileName() + ".changelog-sha256");
+  }
+
+  public static boolean isCurrent(Path databaseFile, String checksum) {
+    var marker = markerFile(databaseFile);
+    try {
+      return Files.exists(databaseFile)
+          && Files.exists(marker)
+          && Files.readString(marker).strip().equals(checksum);
+    } catch (IOException e) {
+      log.warn("Could not read changelog marker {}", marker, e);
+      return false;
+    }
+  }
+
+  public static void store(Path databaseFile, String checksum) {
+    var marker = markerFile(databaseFile);
+    try {
+      Files.writeString(marker, checksum);
+    } catch (IOException e) {
+      log.warn("Could not write changelog marker {}", marker, e);
+    }
+  }
+
+  /** Checksum of the changelog on the classpath, empty if it cannot be read. */
+  public static Optional<String> compute() {
+    var url = ChangelogChecksum.class.getClassLoader().getResource(CHANGELOG_DIRECTORY);
+    if (url == null) {
+      return Optional.empty();
+    }
+    try {
+      URI uri = url.toURI();
+      if (!"jar".equals(uri.getScheme())) {
+        return Optional.of(checksum(Path.of(uri)));
+      }
+      try {
+        return Optional.of(checksum(FileSystems.getFileSystem(uri).provider().getPath(uri)));
+      } catch (FileSystemNotFoundException e) {
+        try (var jar = FileSystems.newFileSystem(uri, Map.of())) {
+          return Optional.of(checksum(jar.provider().getPath(uri)));
+        }
+      }
+    } catch (IOException | URISyntaxException | NoSuchAlgorithmException e) {
+      log.warn("Could not compute changelog checksum", e);
+      return Optional.empty();
+    }
+  }
+
+  private static String checksum(Path directory) throws IOException, NoSuchAlgorithmException {
+    var digest = MessageDigest.getInstance("SHA-256");
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (var file : files.filter(Files::isRegularFile).sorted().toList()) {
+        digest.update(directory.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+        digest.update(Files.readAllBytes(file));
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+}
@@ -0,0 +1,62 @@
+package com.felixkroemer.persistence;
+
+import static com.felixkroemer.config.ConfigurationManager.DB_BATCH_SIZE;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.dagger.DaggerModule;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+
+/**
+ * Builds the session factory on a background thread, so the watcher can start before migrations
+ * and Hibernate bootstrap are done. Callers that need the database block until it is ready,
+ * everything else (watching, stabilizing, hashing, buffered writes) keeps going.
+ */
+@Slf4j
+@Singleton
+public class PersistenceInitializer {
+
+  private final ConfigurationManager configurationManager;
+  private CompletableFuture<SessionFactory> sessionFactory;
+
+  @Inject
+  public PersistenceInitializer(ConfigurationManager configurationManager) {
+    this.configurationManager = configurationManager;
+  }
+
+  public synchronized CompletableFuture<SessionFactory> start() {
+    if (sessionFactory == null) {
+      sessionFactory = new CompletableFuture<>();
+      Thread.ofPlatform()
+          .name("persistence-init")
+          .daemon(true)
+          .start(
+              () -> {
+                long start = System.nanoTime();
+                try {
+                  sessionFactory.complete(
+                      DaggerModule.buildSessionFactory(
+                          configurationManager.getConfigDir().resolve("sqlite.db"),
+                          configurationManager.getInt(DB_BATCH_SIZE)));
+                  log.info(
+                      "Persistence ready after {}ms", (System.nanoTime() - start) / 1_000_000);
+                } catch (Throwable e) {
+                  sessionFactory.completeExceptionally(e);
+                }
+              });
+    }
+    return sessionFactory;
+  }
+
+  public SessionFactory getSessionFactory() {
+    try {
+      return start().join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+  }
+}
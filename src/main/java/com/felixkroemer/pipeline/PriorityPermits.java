@@ -0,0 +1,107 @@
+package com.felixkroemer.pipeline;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Permits that are handed to waiters by priority instead of arrival order. Each waiter supplies a
+ * key, the waiter with the lowest key is served first and equal keys are served in arrival order.
+ * Released permits are passed to the next waiter directly, so late arrivals cannot barge. Like
+ * {@link ResizableSemaphore} the number of permits can be changed while permits are held.
+ */
+class PriorityPermits {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final PriorityQueue<Waiter> waiters =
+      new PriorityQueue<>(
+          Comparator.comparingLong((Waiter waiter) -> waiter.key)
+              .thenComparingLong(waiter -> waiter.sequence));
+  private int maxPermits;
+  private int usedPermits;
+  private long sequence;
+
+  private static final class Waiter {
+    private final long key;
+    private final long sequence;
+    private final Condition condition;
+    private boolean granted;
+
+    private Waiter(long key, long sequence, Condition condition) {
+      this.key = key;
+      this.sequence = sequence;
+      this.condition = condition;
+    }
+  }
+
+  PriorityPermits(int permits) {
+    this.maxPermits = permits;
+  }
+
+  void acquire(long key) throws InterruptedException {
+    lock.lock();
+    try {
+      if (waiters.isEmpty() && usedPermits < maxPermits) {
+        usedPermits++;
+        return;
+      }
+      var waiter = new Waiter(key, sequence++, lock.newCondition());
+      waiters.add(waiter);
+      try {
+        while (!waiter.granted) {
+          waiter.condition.await();
+        }
+      } catch (InterruptedException e) {
+        if (waiter.granted) {
+          // The permit was handed over concurrently, pass it on
+          usedPermits--;
+          grant();
+        } else {
+          waiters.remove(waiter);
+        }
+        throw e;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void release() {
+    lock.lock();
+    try {
+      usedPermits--;
+      grant();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void resize(int permits) {
+    lock.lock();
+    try {
+      maxPermits = permits;
+      grant();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int getQueueLength() {
+    lock.lock();
+    try {
+      return waiters.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void grant() {
+    while (usedPermits < maxPermits && !waiters.isEmpty()) {
+      var waiter = waiters.poll();
+      waiter.granted = true;
+      usedPermits++;
+      waiter.condition.signal();
+    }
+  }
+}
@@ -0,0 +1,382 @@
+package com.felixkroemer.pipeline;
+
+import static com.felixkroemer.config.ConfigurationManager.ANALYZE_CONCURRENCY;
+import static com.felixkroemer.config.ConfigurationManager.HASH_CONCURRENCY;
+import static com.felixkroemer.config.ConfigurationManager.MAX_IN_FLIGHT_FILES;
+import static com.felixkroemer.config.ConfigurationManager.MOVE_CONCURRENCY;
+import static com.felixkroemer.config.ConfigurationManager.PERSIST_CONCURRENCY;
+import static com.felixkroemer.config.ConfigurationManager.SCHEDULING_COST_MS_PER_MB;
+
+import com.felixkroemer.claim.FileClaimer;
+import com.felixkroemer.config.ConfigSnapshot;
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.config.WatchRule;
+import com.felixkroemer.file.FileHandler;
+import com.felixkroemer.file.FileJob;
+import com.felixkroemer.file.FileMoveEntity;
+import com.felixkroemer.file.error.FileClaimLostException;
+import com.felixkroemer.file.error.FileMoveStatus;
+import com.felixkroemer.metrics.Counter;
+import com.felixkroemer.metrics.Histogram;
+import com.felixkroemer.metrics.Metrics;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs files through the stages stabilize, claim, analyze, move and persist. Stabilization is
+ * driven by the {@link com.felixkroemer.file.StabilityTracker}, a stable file is claimed by the
+ * {@link FileClaimer} before it is recorded and hashed, the other stages run on their own
+ * executors. The number of files in flight is bounded, so {@link
+ * #submit(Path, WatchRule)} blocks the caller once the pipeline is saturated.
+ *
+ * <p>Files waiting for an analyze permit are served by a deadline: their arrival time plus their
+ * estimated cost, less a minute per priority level of their rule. Small files thereby overtake
+ * large ones that arrived shortly before them, while a large file is overtaken only by files
+ * arriving within its cost window and cannot starve.
+ */
+@Slf4j
+@Singleton
+public class ProcessingPipeline {
+
+  private static final long PRIORITY_STEP_MS = 60_000;
+
+  private final FileHandler fileHandler;
+  private final FileClaimer fileClaimer;
+
+  private final ResizableSemaphore inFlight;
+  private final Set<Path> activePaths = ConcurrentHashMap.newKeySet();
+  private final Object drained = new Object();
+  private volatile boolean accepting = true;
+  private final PriorityPermits analyzePermits;
+  private volatile long costMsPerMb;
+
+  private final ThreadPoolExecutor hashExecutor;
+  private final ExecutorService analyzeExecutor;
+  private final ThreadPoolExecutor moveExecutor;
+  private final ThreadPoolExecutor persistExecutor;
+
+  private final Histogram hashDuration;
+  private final Histogram analyzeWait;
+  private final Histogram analyzeDuration;
+  private final Histogram moveDuration;
+  private final Histogram persistDuration;
+  private final Histogram fileDuration;
+  private final Counter filesSucceeded;
+  private final Counter filesFailed;
+
+  @Inject
+  public ProcessingPipeline(
+      ConfigurationManager configurationManager,
+      FileHandler fileHandler,
+      FileClaimer fileClaimer,
+      Metrics metrics) {
+    this.fileHandler = fileHandler;
+    this.fileClaimer = fileClaimer;
+
+    this.inFlight = new ResizableSemaphore(configurationManager.getInt(MAX_IN_FLIGHT_FILES));
+    this.analyzePermits = new PriorityPermits(configurationManager.getInt(ANALYZE_CONCURRENCY));
+    this.costMsPerMb = configurationManager.getInt(SCHEDULING_COST_MS_PER_MB);
+
+    this.hashExecutor = newStageExecutor("hash", configurationManager.getInt(HASH_CONCURRENCY));
+    this.analyzeExecutor =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("analyze-", 0).factory());
+    this.moveExecutor = newStageExecutor("move", configurationManager.getInt(MOVE_CONCURRENCY));
+    this.persistExecutor =
+        newStageExecutor("persist", configurationManager.getInt(PERSIST_CONCURRENCY));
+
+    metrics.gauge(
+        "dropcatcher_files_in_flight",
+        "Files admitted to the pipeline and not yet completed",
+        inFlight::getUsedPermits);
+    metrics.gauge(
+        "dropcatcher_analyze_queue_length",
+        "Files waiting for an analyze permit",
+        analyzePermits::getQueueLength);
+    this.hashDuration = metrics.histogram("dropcatcher_hash_duration", "Time spent hashing a file");
+    this.analyzeWait =
+        metrics.histogram("dropcatcher_analyze_wait", "Time a file waited for an analyze permit");
+    this.analyzeDuration =
+        metrics.histogram("dropcatcher_analyze_duration", "Time spent analyzing a file");
+    this.moveDuration =
+        metrics.histogram(
+            "dropcatcher_apply_result_duration", "Time spent applying an analysis result");
+    this.persistDuration =
+        metrics.histogram("dropcatcher_persist_duration", "Time spent handing off the final row");
+    this.fileDuration =
+        metrics.histogram(
+            "dropcatcher_file_duration", "Time from submission until a file is completed");
+    this.filesSucceeded =
+        metrics.counter("dropcatcher_files_succeeded_total", "Files moved to their target");
+    this.filesFailed =
+        metrics.counter("dropcatcher_files_failed_total", "Files that could not be moved");
+
+    configurationManager.addListener(this::resize);
+  }
+
+  /** Applies changed limits, files in flight keep running and the new limits apply to new work. */
+  private void resize(ConfigSnapshot config) {
+    inFlight.resize(config.getInt(MAX_IN_FLIGHT_FILES));
+    analyzePermits.resize(config.getInt(ANALYZE_CONCURRENCY));
+    costMsPerMb = config.getInt(SCHEDULING_COST_MS_PER_MB);
+    resize(hashExecutor, config.getInt(HASH_CONCURRENCY));
+    resize(moveExecutor, config.getInt(MOVE_CONCURRENCY));
+    resize(persistExecutor, config.getInt(PERSIST_CONCURRENCY));
+  }
+
+  private static void resize(ThreadPoolExecutor executor, int threads) {
+    if (threads > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(threads);
+      executor.setCorePoolSize(threads);
+    } else {
+      executor.setCorePoolSize(threads);
+      executor.setMaximumPoolSize(threads);
+    }
+  }
+
+  /**
+   * Submits a detected file, it is recorded once it has become stable and was claimed.
+   *
+   * @return the job, empty if the file is already in flight or the pipeline is shutting down
+   */
+  public Optional<FileJob> submit(Path inputFilePath, WatchRule rule) {
+    if (!accepting) {
+      log.debug("Pipeline is shutting down, not accepting {}", inputFilePath);
+      return Optional.empty();
+    }
+    if (!activePaths.add(inputFilePath)) {
+      log.debug("File {} is already being processed", inputFilePath);
+      return Optional.empty();
+    }
+    if (!acquireCapacity(inputFilePath)) {
+      return Optional.empty();
+    }
+    var job = new FileJob(inputFilePath, rule);
+    process(
+        job,
+        fileHandler
+            .awaitStability(job)
+            .thenRunAsync(
+                () -> {
+                  fileClaimer.claim(job);
+                  fileHandler.persistPending(job);
+                },
+                persistExecutor));
+    return Optional.of(job);
+  }
+
+  /**
+   * Resubmits a row claimed from the retry queue.
+   *
+   * @return false if the file was not accepted, the caller has to schedule the row again
+   */
+  public boolean submitRetry(FileMoveEntity entity, WatchRule rule) {
+    var inputFilePath = Path.of(entity.getSourceDirectory(), entity.getSourceFileName());
+    if (!accepting) {
+      log.debug("Pipeline is shutting down, not accepting {}", inputFilePath);
+      return false;
+    }
+    if (!activePaths.add(inputFilePath)) {
+      log.debug("File {} is already being processed", inputFilePath);
+      return false;
+    }
+    if (!acquireCapacity(inputFilePath)) {
+      return false;
+    }
+    var job = new FileJob(entity.getId(), inputFilePath, rule);
+    job.setEntity(entity);
+    process(job, CompletableFuture.runAsync(() -> fileClaimer.claim(job), persistExecutor));
+    return true;
+  }
+
+  /**
+   * Submits a file that is known to be complete, e.g. an upload, without stabilization and
+   * claiming. The pending row is recorded before this returns, so its id can identify the job.
+   *
+   * @return the job, empty if the pipeline is shutting down
+   */
+  public Optional<FileJob> submitComplete(Path inputFilePath, WatchRule rule, String fileHash) {
+    if (!accepting || !activePaths.add(inputFilePath)) {
+      return Optional.empty();
+    }
+    if (!acquireCapacity(inputFilePath)) {
+      return Optional.empty();
+    }
+    var job = new FileJob(inputFilePath, rule);
+    job.setPrecomputedHash(fileHash);
+    try {
+      fileHandler.persistPending(job);
+    } catch (RuntimeException e) {
+      release(inputFilePath);
+      throw e;
+    }
+    process(job, CompletableFuture.completedFuture(null));
+    return Optional.of(job);
+  }
+
+  private boolean acquireCapacity(Path inputFilePath) {
+    try {
+      inFlight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      deactivate(inputFilePath);
+      log.warn("Interrupted while waiting for pipeline capacity, dropping {}", inputFilePath);
+      return false;
+    }
+    if (!accepting) {
+      release(inputFilePath);
+      return false;
+    }
+    return true;
+  }
+
+  private void process(FileJob job, CompletableFuture<Void> stable) {
+    stable
+        .thenRunAsync(() -> timed(hashDuration, () -> fileHandler.hash(job)), hashExecutor)
+        .thenRunAsync(() -> analyze(job), analyzeExecutor)
+        .thenRunAsync(
+            () -> timed(moveDuration, () -> fileHandler.applyAnalysisResult(job)), moveExecutor)
+        .whenCompleteAsync((ignored, e) -> complete(job, e), persistExecutor);
+  }
+
+  private void analyze(FileJob job) {
+    long waitStart = System.nanoTime();
+    try {
+      analyzePermits.acquire(deadlineMillis(job, waitStart));
+      analyzeWait.recordSince(waitStart);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    }
+    try {
+      timed(analyzeDuration, () -> fileHandler.analyze(job));
+    } finally {
+      analyzePermits.release();
+    }
+  }
+
+  private void complete(FileJob job, Throwable e) {
+    try {
+      if (unwrap(e) instanceof FileClaimLostException) {
+        // The file and its outcome belong to the instance that claimed it, not to this row
+        log.debug("File {} is handled by another instance", job.getInputFilePath());
+        return;
+      }
+      if (job.getEntity() == null) {
+        // Failed before the file was recorded, e.g. because it did not become stable
+        fileHandler.persistPending(job);
+      }
+      if (e != null) {
+        var cause = unwrap(e);
+        log.error("Failed to process file {}", job.getInputFilePath(), cause);
+        fileHandler.recordFailure(job, cause);
+      }
+      timed(persistDuration, () -> fileHandler.persist(job));
+      if (job.getEntity().getStatus() == FileMoveStatus.SUCCEEDED) {
+        filesSucceeded.increment();
+      } else {
+        filesFailed.increment();
+      }
+    } catch (Exception persistException) {
+      log.error("Failed to persist entity for {}", job.getInputFilePath(), persistException);
+    } finally {
+      fileDuration.recordSince(job.getSubmittedAtNanos());
+      release(job.getInputFilePath());
+      job.getCompletion().complete(job);
+    }
+  }
+
+  private void release(Path inputFilePath) {
+    inFlight.release();
+    deactivate(inputFilePath);
+  }
+
+  private void deactivate(Path inputFilePath) {
+    activePaths.remove(inputFilePath);
+    if (activePaths.isEmpty()) {
+      synchronized (drained) {
+        drained.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Stops accepting files and waits up to {@code timeoutMs} for the files in flight to complete.
+   * Files that are still running afterwards keep their last checkpointed row and are resumed by the
+   * {@link com.felixkroemer.retry.RetryScheduler} on the next start.
+   *
+   * @return whether all files in flight completed in time
+   */
+  public boolean drain(long timeoutMs) {
+    accepting = false;
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    synchronized (drained) {
+      while (!activePaths.isEmpty()) {
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMs <= 0) {
+          log.warn("{} files still in flight after {}ms", activePaths.size(), timeoutMs);
+          return false;
+        }
+        try {
+          drained.wait(remainingMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private long deadlineMillis(FileJob job, long nowNanos) {
+    long costMs = (long) (fileHandler.estimateAnalysisCost(job) * costMsPerMb);
+    long priorityMs = job.getRule().priority() * PRIORITY_STEP_MS;
+    return TimeUnit.NANOSECONDS.toMillis(nowNanos) + costMs - priorityMs;
+  }
+
+  public void shutdown() {
+    for (var executor :
+        new ExecutorService[] {hashExecutor, analyzeExecutor, moveExecutor, persistExecutor}) {
+      executor.shutdown();
+    }
+    try {
+      persistExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void timed(Histogram histogram, Runnable stage) {
+    long start = System.nanoTime();
+    try {
+      stage.run();
+    } finally {
+      histogram.recordSince(start);
+    }
+  }
+
+  private static Throwable unwrap(Throwable e) {
+    return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+  }
+
+  private static ThreadPoolExecutor newStageExecutor(String stage, int concurrency) {
+    return new ThreadPoolExecutor(
+        concurrency,
+        concurrency,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(),
+        Thread.ofPlatform().name(stage + "-", 0).daemon(true).factory());
+  }
+}
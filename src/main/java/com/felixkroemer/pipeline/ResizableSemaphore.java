@@ -0,0 +1,35 @@
+package com.felixkroemer.pipeline;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Semaphore whose number of permits can be changed while permits are held. Shrinking below the
+ * number of held permits lets the holders finish, new acquirers wait until enough were released.
+ */
+class ResizableSemaphore extends Semaphore {
+
+  private int maxPermits;
+
+  ResizableSemaphore(int permits) {
+    super(permits);
+    this.maxPermits = permits;
+  }
+
+  synchronized void resize(int permits) {
+    int delta = permits - maxPermits;
+    if (delta > 0) {
+      release(delta);
+    } else if (delta < 0) {
+      reducePermits(-delta);
+    }
+    maxPermits = permits;
+  }
+
+  synchronized int getMaxPermits() {
+    return maxPermits;
+  }
+
+  int getUsedPermits() {
+    return getMaxPermits() - availablePermits();
+  }
+}
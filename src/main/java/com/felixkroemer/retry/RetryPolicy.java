@@ -0,0 +1,64 @@
+package com.felixkroemer.retry;
+
+import static com.felixkroemer.config.ConfigurationManager.RETRY_BASE_DELAY_MS;
+import static com.felixkroemer.config.ConfigurationManager.RETRY_MAX_ATTEMPTS;
+import static com.felixkroemer.config.ConfigurationManager.RETRY_MAX_DELAY_MS;
+
+import com.felixkroemer.common.ErrorCode;
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.file.FileMoveEntity;
+import com.felixkroemer.file.error.FileMoveStatus;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumSet;
+import java.util.Set;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Singleton
+public class RetryPolicy {
+
+  /** Failures that can go away on their own, anything else would fail the same way again. */
+  private static final Set<ErrorCode> RETRYABLE_CODES =
+      EnumSet.of(
+          ErrorCode.FILE_MOVE_FAILED,
+          ErrorCode.STABILITY_CHECKS_EXCEEDED,
+          ErrorCode.LLM_UNAVAILABLE);
+
+  private final int maxAttempts;
+  private final long baseDelayMs;
+  private final long maxDelayMs;
+
+  @Inject
+  public RetryPolicy(ConfigurationManager configurationManager) {
+    this.maxAttempts = configurationManager.getInt(RETRY_MAX_ATTEMPTS);
+    this.baseDelayMs = configurationManager.getInt(RETRY_BASE_DELAY_MS);
+    this.maxDelayMs = configurationManager.getInt(RETRY_MAX_DELAY_MS);
+  }
+
+  public boolean isRetryable(ErrorCode errorCode) {
+    return errorCode == null || RETRYABLE_CODES.contains(errorCode);
+  }
+
+  public void markFailed(FileMoveEntity entity, FileMoveStatus failedStatus, boolean retryable) {
+    int attempts = entity.getAttemptCount() + 1;
+    entity.setAttemptCount(attempts);
+    if (retryable && attempts < maxAttempts) {
+      long delayMs = Math.min(maxDelayMs, baseDelayMs << Math.min(attempts - 1, 20));
+      var nextAttemptAt = LocalDateTime.now().plus(delayMs, ChronoUnit.MILLIS);
+      log.info(
+          "Scheduling retry {} of {} for file {} at {}",
+          attempts,
+          maxAttempts - 1,
+          entity.getSourceFileName(),
+          nextAttemptAt);
+      entity.setStatus(FileMoveStatus.RETRY_SCHEDULED);
+      entity.setNextAttemptAt(nextAttemptAt);
+    } else {
+      entity.setStatus(failedStatus);
+      entity.setNextAttemptAt(null);
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package com.felixkroemer.retry;
+
+import static com.felixkroemer.config.ConfigurationManager.RETRY_BATCH_SIZE;
+import static com.felixkroemer.config.ConfigurationManager.RETRY_POLL_INTERVAL_MS;
+
+import com.felixkroemer.claim.FileClaimer;
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.file.FileMoveEntity;
+import com.felixkroemer.file.FileMoveWriter;
+import com.felixkroemer.file.error.FileMoveStatus;
+import com.felixkroemer.pipeline.ProcessingPipeline;
+import dagger.Lazy;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+
+/**
+ * Drains the retry queue stored in the file_move table. Due rows are claimed in batches by
+ * switching them to {@link FileMoveStatus#RETRYING} within one transaction and are then handed back
+ * to the {@link ProcessingPipeline}. On start, rows left unfinished by a previous run are queued
+ * for an immediate retry.
+ */
+@Slf4j
+@Singleton
+public class RetryScheduler {
+
+  private final ConfigurationManager configurationManager;
+  private final Lazy<SessionFactory> sessionFactory;
+  private final FileMoveWriter fileMoveWriter;
+  private final ProcessingPipeline pipeline;
+  private final FileClaimer fileClaimer;
+  private final ScheduledExecutorService scheduler;
+  private final long pollIntervalMs;
+  private final int batchSize;
+
+  @Inject
+  public RetryScheduler(
+      ConfigurationManager configurationManager,
+      Lazy<SessionFactory> sessionFactory,
+      FileMoveWriter fileMoveWriter,
+      ProcessingPipeline pipeline,
+      FileClaimer fileClaimer) {
+    this.configurationManager = configurationManager;
+    this.fileClaimer = fileClaimer;
+    this.sessionFactory = sessionFactory;
+    this.fileMoveWriter = fileMoveWriter;
+    this.pipeline = pipeline;
+    this.pollIntervalMs = configurationManager.getInt(RETRY_POLL_INTERVAL_MS);
+    this.batchSize = configurationManager.getInt(RETRY_BATCH_SIZE);
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("retry").daemon(true).factory());
+  }
+
+  public void start() {
+    scheduler.execute(this::resumeInterrupted);
+    scheduler.scheduleWithFixedDelay(
+        this::drain, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() {
+    scheduler.shutdownNow();
+  }
+
+  private void drain() {
+    try {
+      List<FileMoveEntity> claimed;
+      do {
+        claimed = claimDue();
+        for (var entity : claimed) {
+          resubmit(entity);
+        }
+      } while (claimed.size() == batchSize);
+    } catch (Exception e) {
+      log.error("Failed to drain retry queue", e);
+    }
+  }
+
+  /**
+   * Schedules rows that a previous run left pending or retrying. Rows created by this run are
+   * excluded, since they may still be buffered or in flight. Files the previous run claimed stay
+   * claimed for their scheduled rows, the others are released.
+   */
+  private void resumeInterrupted() {
+    var startedAt =
+        LocalDateTime.ofInstant(
+            Instant.ofEpochMilli(ManagementFactory.getRuntimeMXBean().getStartTime()),
+            ZoneId.systemDefault());
+    try {
+      int resumed =
+          sessionFactory.get().fromTransaction(
+              (session) ->
+                  session
+                      .createMutationQuery(
+                          "update FileMoveEntity f"
+                              + " set f.status = :scheduled, f.nextAttemptAt = :now"
+                              + " where f.status in :interrupted and f.createdAt < :startedAt")
+                      .setParameter("scheduled", FileMoveStatus.RETRY_SCHEDULED)
+                      .setParameter("now", LocalDateTime.now())
+                      .setParameter(
+                          "interrupted", List.of(FileMoveStatus.PENDING, FileMoveStatus.RETRYING))
+                      .setParameter("startedAt", startedAt)
+                      .executeUpdate());
+      if (resumed > 0) {
+        log.info("Resuming {} files interrupted by the previous shutdown", resumed);
+      }
+      fileClaimer.releaseLeftovers(findScheduledBefore(startedAt));
+    } catch (Exception e) {
+      log.error("Failed to resume interrupted files", e);
+    }
+  }
+
+  private Set<UUID> findScheduledBefore(LocalDateTime startedAt) {
+    return new HashSet<>(
+        sessionFactory.get().fromTransaction(
+            (session) ->
+                session
+                    .createSelectionQuery(
+                        "select f.id from FileMoveEntity f"
+                            + " where f.status = :scheduled and f.createdAt < :startedAt",
+                        UUID.class)
+                    .setParameter("scheduled", FileMoveStatus.RETRY_SCHEDULED)
+                    .setParameter("startedAt", startedAt)
+                    .getResultList()));
+  }
+
+  private List<FileMoveEntity> claimDue() {
+    return sessionFactory.get().fromTransaction(
+        (session) -> {
+          var due =
+              session
+                  .createSelectionQuery(
+                      "from FileMoveEntity f"
+                          + " where f.status = :status and f.nextAttemptAt <= :now"
+                          + " order by f.nextAttemptAt",
+                      FileMoveEntity.class)
+                  .setParameter("status", FileMoveStatus.RETRY_SCHEDULED)
+                  .setParameter("now", LocalDateTime.now())
+                  .setMaxResults(batchSize)
+                  .getResultList();
+          if (!due.isEmpty()) {
+            session
+                .createMutationQuery(
+                    "update FileMoveEntity f set f.status = :status where f.id in :ids")
+                .setParameter("status", FileMoveStatus.RETRYING)
+                .setParameter("ids", due.stream().map(FileMoveEntity::getId).toList())
+                .executeUpdate();
+            session.clear();
+            due.forEach(entity -> entity.setStatus(FileMoveStatus.RETRYING));
+          }
+          return due;
+        });
+  }
+
+  private void resubmit(FileMoveEntity entity) {
+    var sourcePath = Path.of(entity.getSourceDirectory(), entity.getSourceFileName());
+    var rule = configurationManager.findWatchRule(sourcePath.getParent());
+    if (rule.isEmpty()) {
+      giveUp(entity, "No watch rule covers directory: " + sourcePath.getParent());
+      return;
+    }
+    if (!fileClaimer.exists(entity.getId(), sourcePath, rule.get())) {
+      giveUp(entity, "Source file no longer exists: " + sourcePath);
+      return;
+    }
+    log.info("Retrying file {} (attempt {})", sourcePath, entity.getAttemptCount() + 1);
+    if (!pipeline.submitRetry(entity, rule.get())) {
+      postpone(entity);
+    }
+  }
+
+  /** Puts a row the pipeline did not accept back into the queue for the next poll. */
+  private void postpone(FileMoveEntity entity) {
+    log.debug("Postponing retry for {}", entity.getSourceFileName());
+    entity.setStatus(FileMoveStatus.RETRY_SCHEDULED);
+    entity.setNextAttemptAt(LocalDateTime.now().plus(pollIntervalMs, ChronoUnit.MILLIS));
+    fileMoveWriter.update(entity);
+  }
+
+  private void giveUp(FileMoveEntity entity, String reason) {
+    log.info("Dropping retry for {}: {}", entity.getSourceFileName(), reason);
+    entity.setStatus(FileMoveStatus.MOVE_FAILED);
+    entity.setNextAttemptAt(null);
+    entity.setErrorMessage(reason);
+    fileMoveWriter.update(entity);
+  }
+}
@@ -0,0 +1,183 @@
+package com.felixkroemer.watch;
+
+import static com.felixkroemer.config.ConfigurationManager.BACKLOG_BATCH_SIZE;
+import static com.felixkroemer.config.ConfigurationManager.BACKLOG_CONCURRENCY;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.config.WatchRule;
+import com.felixkroemer.file.error.FileMoveStatus;
+import com.felixkroemer.pipeline.ProcessingPipeline;
+import dagger.Lazy;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+
+/**
+ * Feeds files that are already present in a watched tree into the pipeline, e.g. files dropped
+ * while the service was down or missed because of a watch event overflow. The tree is walked
+ * lazily and files are grouped into per-directory batches, each batch is checked against file_move
+ * on a worker pool so that files which are already being handled or awaiting a retry are skipped.
+ */
+@Slf4j
+@Singleton
+public class BacklogScanner {
+
+  private final ConfigurationManager configurationManager;
+  private final Lazy<SessionFactory> sessionFactory;
+  private final ProcessingPipeline pipeline;
+  private final int batchSize;
+  private final int maxOutstandingBatches;
+  private final Semaphore outstandingBatches;
+  private final ExecutorService scanExecutor;
+  private final ExecutorService batchExecutor;
+  private final Set<Path> pendingScans = ConcurrentHashMap.newKeySet();
+
+  @Inject
+  public BacklogScanner(
+      ConfigurationManager configurationManager,
+      Lazy<SessionFactory> sessionFactory,
+      ProcessingPipeline pipeline) {
+    this.configurationManager = configurationManager;
+    this.sessionFactory = sessionFactory;
+    this.pipeline = pipeline;
+    this.batchSize = configurationManager.getInt(BACKLOG_BATCH_SIZE);
+    int concurrency = configurationManager.getInt(BACKLOG_CONCURRENCY);
+    this.maxOutstandingBatches = concurrency * 2;
+    this.outstandingBatches = new Semaphore(maxOutstandingBatches);
+    this.scanExecutor =
+        Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("backlog-scan").daemon(true).factory());
+    this.batchExecutor =
+        Executors.newFixedThreadPool(
+            concurrency, Thread.ofPlatform().name("backlog-", 0).daemon(true).factory());
+  }
+
+  public void scanAsync(Path directory, WatchRule rule) {
+    if (!pendingScans.add(directory)) {
+      log.info("Backlog scan of {} already pending", directory);
+      return;
+    }
+    scanExecutor.execute(
+        () -> {
+          pendingScans.remove(directory);
+          scan(directory, rule);
+        });
+  }
+
+  private void scan(Path root, WatchRule rule) {
+    log.info("Scanning {} for unprocessed files", root);
+    var submitted = new AtomicInteger();
+    var batches = new HashMap<Path, List<Path>>();
+    try {
+      Files.walkFileTree(
+          root,
+          Set.of(),
+          rule.recursive() ? Integer.MAX_VALUE : 1,
+          new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+              return dir.equals(root) || !Watch.isIgnored(dir.getFileName())
+                  ? FileVisitResult.CONTINUE
+                  : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              if (!attrs.isRegularFile()
+                  || Watch.isIgnored(file.getFileName())
+                  || !belongsTo(file.getParent(), rule)) {
+                return FileVisitResult.CONTINUE;
+              }
+              var batch = batches.computeIfAbsent(file.getParent(), d -> new ArrayList<>());
+              batch.add(file);
+              if (batch.size() == batchSize) {
+                dispatch(file.getParent(), batches.remove(file.getParent()), rule, submitted);
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+              log.warn("Could not visit {} during backlog scan", file, e);
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+              var batch = batches.remove(dir);
+              if (batch != null) {
+                dispatch(dir, batch, rule, submitted);
+              }
+              return FileVisitResult.CONTINUE;
+            }
+          });
+      outstandingBatches.acquireUninterruptibly(maxOutstandingBatches);
+      outstandingBatches.release(maxOutstandingBatches);
+      log.info("Backlog scan of {} submitted {} files", root, submitted.get());
+    } catch (IOException e) {
+      log.error("Failed to scan {} for unprocessed files", root, e);
+    }
+  }
+
+  /** Files of a nested rule's input directory are left to that rule's own scan. */
+  private boolean belongsTo(Path directory, WatchRule rule) {
+    return configurationManager.findWatchRule(directory).map(rule::equals).orElse(true);
+  }
+
+  private void dispatch(
+      Path directory, List<Path> batch, WatchRule rule, AtomicInteger submitted) {
+    outstandingBatches.acquireUninterruptibly();
+    batchExecutor.execute(
+        () -> {
+          try {
+            for (Path path : filterUnrecorded(directory, batch)) {
+              pipeline.submit(path, rule);
+              submitted.incrementAndGet();
+            }
+          } catch (Exception e) {
+            log.error("Failed to process backlog batch in {}", directory, e);
+          } finally {
+            outstandingBatches.release();
+          }
+        });
+  }
+
+  private List<Path> filterUnrecorded(Path directory, List<Path> batch) {
+    var fileNames = batch.stream().map(path -> path.getFileName().toString()).toList();
+    var recorded =
+        new HashSet<>(
+            sessionFactory.get().fromTransaction(
+                (session) ->
+                    session
+                        .createSelectionQuery(
+                            "select f.sourceFileName from FileMoveEntity f"
+                                + " where f.sourceDirectory = :directory"
+                                + " and f.sourceFileName in :fileNames"
+                                + " and f.status <> :succeeded",
+                            String.class)
+                        .setParameter("directory", directory.toString())
+                        .setParameter("fileNames", fileNames)
+                        .setParameter("succeeded", FileMoveStatus.SUCCEEDED)
+                        .getResultList()));
+    return batch.stream()
+        .filter(path -> !recorded.contains(path.getFileName().toString()))
+        .toList();
+  }
+}
@@ -1,24 +1,71 @@
 package com.felixkroemer.watch;
 
 import com.felixkroemer.config.ConfigurationManager;
-import com.felixkroemer.file.FileHandler;
+import com.felixkroemer.config.WatchRule;
+import com.felixkroemer.file.StabilityTracker;
+import com.felixkroemer.pipeline.ProcessingPipeline;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
+@Singleton
 public class Watch {
 
   private final ConfigurationManager configurationManager;
   private final WatchService watcher;
-  private final FileHandler fileHandler;
+  private final ProcessingPipeline pipeline;
+  private final StabilityTracker stabilityTracker;
+  private final BacklogScanner backlogScanner;
+
+  private final Map<WatchKey, WatchedDirectory> watchedDirectories = new ConcurrentHashMap<>();
+  private List<WatchRule> activeRules = List.of();
+  private boolean firstEventHandled;
+
+  /**
+   * A watched directory and the rules whose trees contain it. Nested input directories share the
+   * watch key of the directory, their files belong to the most specific rule.
+   */
+  private record WatchedDirectory(Path directory, List<WatchRule> rules) {
+
+    WatchRule rule() {
+      return mostSpecific(rules, directory);
+    }
+
+    WatchedDirectory with(WatchRule rule) {
+      if (rules.contains(rule)) {
+        return this;
+      }
+      var combined = new ArrayList<>(rules);
+      combined.add(rule);
+      return new WatchedDirectory(directory, List.copyOf(combined));
+    }
+
+    WatchedDirectory retain(List<WatchRule> activeRules) {
+      return new WatchedDirectory(directory, rules.stream().filter(activeRules::contains).toList());
+    }
+  }
 
   @Inject
-  public Watch(ConfigurationManager configurationManager, FileHandler fileHandler) {
+  public Watch(
+      ConfigurationManager configurationManager,
+      ProcessingPipeline pipeline,
+      StabilityTracker stabilityTracker,
+      BacklogScanner backlogScanner) {
     this.configurationManager = configurationManager;
-    this.fileHandler = fileHandler;
+    this.pipeline = pipeline;
+    this.stabilityTracker = stabilityTracker;
+    this.backlogScanner = backlogScanner;
     try {
       this.watcher = FileSystems.getDefault().newWatchService();
     } catch (IOException e) {
@@ -27,25 +74,16 @@ public class Watch {
   }
 
   public void watch() {
-    Path inputDir = configurationManager.getInputDir();
-
-    Runtime.getRuntime()
-        .addShutdownHook(
-            new Thread(
-                () -> {
-                  log.info("Shutdown signal received, stopping watcher...");
-                  try {
-                    watcher.close();
-                  } catch (IOException e) {
-                    log.error("Error closing watcher", e);
-                  }
-                }));
-
-    try {
-      inputDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
-    } catch (IOException e) {
-      throw new RuntimeException("Error registering watch", e);
+    for (var rule : configurationManager.getWatchRules()) {
+      try {
+        watchRule(rule);
+      } catch (IOException e) {
+        throw new RuntimeException("Error registering watch for rule " + rule.name(), e);
+      }
     }
+    activeRules = configurationManager.getWatchRules();
+    configurationManager.addListener(config -> applyRules(config.getWatchRules()));
+    log.info("Watching ready after {}ms", ManagementFactory.getRuntimeMXBean().getUptime());
 
     while (true) {
       WatchKey key;
@@ -58,19 +96,151 @@ public class Watch {
         log.error("Watcher interrupted", e);
         continue;
       }
+      var watched = watchedDirectories.get(key);
+      if (watched == null) {
+        key.cancel();
+        continue;
+      }
       for (WatchEvent<?> event : key.pollEvents()) {
-        Path filename = (Path) event.context();
-        if (!filename.toString().endsWith(".swp")
-            && !filename.toString().endsWith(".part")
-            && !filename.toString().startsWith(".")) {
-          try {
-            fileHandler.handle(inputDir.resolve(filename));
-          } catch (Exception e) {
-            log.error("Failed to process file {}", filename, e);
-          }
+        handleEvent(watched, event);
+      }
+      if (!key.reset()) {
+        watchedDirectories.remove(key);
+      }
+    }
+  }
+
+  /** Stops accepting file events, {@link #watch()} returns once the watch loop has noticed. */
+  public void stop() {
+    log.info("Stopping watcher");
+    try {
+      watcher.close();
+    } catch (IOException e) {
+      log.error("Error closing watcher", e);
+    }
+  }
+
+  private void handleEvent(WatchedDirectory watched, WatchEvent<?> event) {
+    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+      log.warn("Watch events overflowed, rescanning {}", watched.directory());
+      backlogScanner.scanAsync(watched.directory(), watched.rule());
+      return;
+    }
+    Path filename = (Path) event.context();
+    if (isIgnored(filename)) {
+      return;
+    }
+    Path inputFilePath = watched.directory().resolve(filename);
+    if (!firstEventHandled) {
+      firstEventHandled = true;
+      log.info("First file event after {}ms", ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+    stabilityTracker.touch(inputFilePath);
+    if (event.kind() != StandardWatchEventKinds.ENTRY_CREATE) {
+      return;
+    }
+    if (Files.isDirectory(inputFilePath, LinkOption.NOFOLLOW_LINKS)) {
+      var recursiveRules = watched.rules().stream().filter(WatchRule::recursive).toList();
+      if (recursiveRules.isEmpty()) {
+        return;
+      }
+      for (var rule : recursiveRules) {
+        try {
+          register(inputFilePath, rule);
+        } catch (IOException e) {
+          log.error("Failed to watch new directory {} for rule {}", inputFilePath, rule.name(), e);
         }
       }
-      key.reset();
+      backlogScanner.scanAsync(inputFilePath, mostSpecific(recursiveRules, inputFilePath));
+      return;
+    }
+    try {
+      pipeline.submit(inputFilePath, watched.rule());
+    } catch (Exception e) {
+      log.error("Failed to submit file {}", filename, e);
+    }
+  }
+
+  private void watchRule(WatchRule rule) throws IOException {
+    register(rule.inputDir(), rule);
+    log.info(
+        "Watching {} ({}) for rule {}",
+        rule.inputDir(),
+        rule.recursive() ? "recursive" : "flat",
+        rule.name());
+    backlogScanner.scanAsync(rule.inputDir(), rule);
+  }
+
+  /**
+   * Switches to a reloaded set of rules. Directories of removed or changed rules are no longer
+   * watched, files already submitted under them finish with the rule they started with.
+   */
+  private synchronized void applyRules(List<WatchRule> rules) {
+    if (rules.equals(activeRules)) {
+      return;
+    }
+    for (var key : watchedDirectories.keySet()) {
+      watchedDirectories.computeIfPresent(
+          key,
+          (ignored, watched) -> {
+            var retained = watched.retain(rules);
+            if (!retained.rules().isEmpty()) {
+              return retained;
+            }
+            key.cancel();
+            return null;
+          });
+    }
+    for (var rule : rules) {
+      if (activeRules.contains(rule)) {
+        continue;
+      }
+      try {
+        watchRule(rule);
+      } catch (IOException e) {
+        log.error("Error registering watch for rule {}", rule.name(), e);
+      }
+    }
+    activeRules = rules;
+  }
+
+  private void register(Path root, WatchRule rule) throws IOException {
+    if (!rule.recursive()) {
+      registerDirectory(root, rule);
+      return;
     }
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+              throws IOException {
+            if (!dir.equals(root) && isIgnored(dir.getFileName())) {
+              return FileVisitResult.SKIP_SUBTREE;
+            }
+            registerDirectory(dir, rule);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  private void registerDirectory(Path directory, WatchRule rule) throws IOException {
+    var key =
+        directory.register(
+            watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    watchedDirectories.merge(
+        key, new WatchedDirectory(directory, List.of(rule)), (watched, added) -> watched.with(rule));
+  }
+
+  private static WatchRule mostSpecific(List<WatchRule> rules, Path directory) {
+    return rules.stream()
+        .filter(rule -> rule.covers(directory))
+        .max(Comparator.comparingInt(rule -> rule.inputDir().getNameCount()))
+        .orElseThrow();
+  }
+
+  static boolean isIgnored(Path filename) {
+    var name = filename.toString();
+    return name.endsWith(".swp") || name.endsWith(".part") || name.startsWith(".");
   }
 }
@@ -0,0 +1,76 @@
+package com.felixkroemer.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.metrics.Metrics;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Runs a 10 MB budget, waiting reservations are run on their own threads. */
+class MemoryBudgetTest {
+
+  private static final String CONFIG_DIR_PROPERTY = "dropcatcher.configDir";
+  private static final List<String> PROPERTIES =
+      List.of(CONFIG_DIR_PROPERTY, ConfigurationManager.ANALYSIS_MEMORY_BUDGET_MB);
+  private static final long MB = 1024 * 1024;
+
+  @TempDir Path directory;
+
+  private MemoryBudget budget;
+
+  @BeforeEach
+  void setUp() {
+    System.setProperty(CONFIG_DIR_PROPERTY, directory.toString());
+    System.setProperty(ConfigurationManager.ANALYSIS_MEMORY_BUDGET_MB, "10");
+    budget = new MemoryBudget(new ConfigurationManager(), new Metrics());
+  }
+
+  @AfterEach
+  void tearDown() {
+    PROPERTIES.forEach(System::clearProperty);
+  }
+
+  @Test
+  void capsReservationsLargerThanTheBudget() {
+    assertEquals(10 * MB, budget.reserve(20 * MB));
+  }
+
+  @Test
+  void reservationsThatFitGoAheadOfAWaitingOne() throws Exception {
+    long first = budget.reserve(8 * MB);
+    var large = CompletableFuture.supplyAsync(() -> budget.reserve(4 * MB));
+    Thread.sleep(100);
+    assertFalse(large.isDone());
+
+    var small = CompletableFuture.supplyAsync(() -> budget.reserve(MB));
+    assertEquals(MB, small.get(1, TimeUnit.SECONDS));
+    assertFalse(large.isDone());
+
+    budget.release(first);
+    assertEquals(4 * MB, large.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void aLongWaitingReservationIsNoLongerOvertaken() throws Exception {
+    long first = budget.reserve(8 * MB);
+    var large = CompletableFuture.supplyAsync(() -> budget.reserve(4 * MB));
+    Thread.sleep(1_200);
+
+    var small = CompletableFuture.supplyAsync(() -> budget.reserve(MB));
+    assertThrows(TimeoutException.class, () -> small.get(200, TimeUnit.MILLISECONDS));
+
+    budget.release(first);
+    assertEquals(4 * MB, large.get(1, TimeUnit.SECONDS));
+    assertEquals(MB, small.get(1, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,69 @@
+package com.felixkroemer.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MimeTypeSnifferTest {
+
+  private static final int HEAD_SIZE = 8 * 1024;
+
+  @TempDir Path directory;
+
+  private final MimeTypeSniffer sniffer = new MimeTypeSniffer();
+
+  @Test
+  void acceptsAMultiByteSequenceCutOffAtTheEndOfTheHead() throws IOException {
+    // An umlaut is two bytes in UTF-8, the odd offset cuts the one at byte 8192 in two
+    var text = "x" + "\u00e4".repeat(HEAD_SIZE);
+    var file = write("notes.txt", text.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(MimeTypeSniffer.TEXT, sniffer.sniff(file, "txt"));
+  }
+
+  @Test
+  void rejectsATruncatedSequenceAtTheEndOfAShortFile() throws IOException {
+    var umlaut = "\u00e4".getBytes(StandardCharsets.UTF_8);
+    var file = write("notes.txt", new byte[] {'a', 'b', umlaut[0]});
+
+    assertEquals(MimeTypeSniffer.UNKNOWN, sniffer.sniff(file, "txt"));
+  }
+
+  @Test
+  void rejectsMalformedInputInsideTheHead() throws IOException {
+    var content = "plain text".repeat(HEAD_SIZE / 10).getBytes(StandardCharsets.UTF_8);
+    content[100] = (byte) 0xC3;
+    content[101] = 'a';
+    var file = write("notes.txt", content);
+
+    assertEquals(MimeTypeSniffer.UNKNOWN, sniffer.sniff(file, "txt"));
+  }
+
+  @Test
+  void sniffsByContentInsteadOfExtension() throws IOException {
+    var pdf = write("scan.txt", "%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII));
+    var png = write("photo.jpg", new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+    var empty = write("empty.pdf", new byte[0]);
+
+    assertEquals(MimeTypeSniffer.PDF, sniffer.sniff(pdf, "txt"));
+    assertEquals(MimeTypeSniffer.PNG, sniffer.sniff(png, "jpg"));
+    assertEquals(MimeTypeSniffer.EMPTY, sniffer.sniff(empty, "pdf"));
+  }
+
+  @Test
+  void usesTheExtensionToTellOfficeContainersApart() throws IOException {
+    var zip = write("report.xlsx", new byte[] {'P', 'K', 3, 4, 0, 0});
+
+    assertEquals(MimeTypeSniffer.XLSX, sniffer.sniff(zip, "xlsx"));
+    assertEquals(MimeTypeSniffer.ZIP, sniffer.sniff(zip, "zip"));
+  }
+
+  private Path write(String name, byte[] content) throws IOException {
+    return Files.write(directory.resolve(name), content);
+  }
+}
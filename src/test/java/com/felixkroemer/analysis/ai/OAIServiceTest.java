@@ -0,0 +1,207 @@
+package com.felixkroemer.analysis.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.felixkroemer.analysis.TextAnalyzer;
+import com.felixkroemer.analysis.ai.error.LLMUnavailableException;
+import com.felixkroemer.analysis.naming.NamingCache;
+import com.felixkroemer.analysis.naming.NamingRuleEngine;
+import com.felixkroemer.analysis.naming.NamingService;
+import com.felixkroemer.analysis.result.AnalysisIncomplete;
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.metrics.Metrics;
+import com.openai.client.okhttp.OpenAIOkHttpClientAsync;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs {@link OAIService} against a local stub of the chat completions endpoint that answers with
+ * scripted status codes and delays.
+ */
+class OAIServiceTest {
+
+  private static final String FILE_NAME = "Invoice_2024_03";
+  private static final String COMPLETION =
+      """
+      {"id":"chatcmpl-1","object":"chat.completion","created":1,"model":"gpt-3.5-turbo",
+      "choices":[{"index":0,"finish_reason":"stop","logprobs":null,
+      "message":{"role":"assistant","content":"%s","refusal":null}}],
+      "usage":{"prompt_tokens":10,"completion_tokens":3,"total_tokens":13}}
+      """
+          .formatted(FILE_NAME);
+  private static final String ERROR =
+      """
+      {"error":{"message":"Scripted failure","type":"test","param":null,"code":null}}
+      """;
+
+  private record Reply(int status, String body, long delayMs) {}
+
+  @TempDir Path directory;
+
+  private final Queue<Reply> replies = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger activeRequests = new AtomicInteger();
+  private final AtomicInteger maxActiveRequests = new AtomicInteger();
+  private volatile Reply fallback = new Reply(200, COMPLETION, 0);
+  private String userHome;
+  private ExecutorService stubExecutor;
+  private HttpServer stub;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    stubExecutor = Executors.newCachedThreadPool();
+    stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    stub.setExecutor(stubExecutor);
+    stub.createContext("/chat/completions", this::reply);
+    stub.start();
+
+    userHome = System.getProperty("user.home");
+    System.setProperty("user.home", directory.toString());
+    writeConfig(10_000, 5, 4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    stub.stop(0);
+    stubExecutor.shutdownNow();
+    System.setProperty("user.home", userHome);
+  }
+
+  @Test
+  void retriesAfterTooManyRequests() {
+    replies.add(new Reply(429, ERROR, 0));
+    replies.add(new Reply(429, ERROR, 0));
+
+    assertEquals(FILE_NAME, createService().analyzeFileName("Invoice March 2024"));
+    assertEquals(3, requests.get());
+  }
+
+  @Test
+  void givesUpOnRequestsThatTimeOut() throws IOException {
+    // The first request loads the classes of the client, which alone can exceed a short timeout
+    assertEquals(FILE_NAME, createService().analyzeFileName("Invoice March 2024"));
+    writeConfig(500, 5, 4);
+    fallback = new Reply(200, COMPLETION, 10_000);
+    var service = createService();
+
+    long start = System.nanoTime();
+    var e =
+        assertThrows(
+            LLMUnavailableException.class, () -> service.analyzeFileName("Invoice April 2024"));
+    assertInstanceOf(TimeoutException.class, e.getCause());
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 10_000);
+    assertEquals(4, requests.get());
+  }
+
+  @Test
+  void timedOutRequestsKeepTheirPermitUntilTheCallCompletes() throws IOException {
+    assertEquals(FILE_NAME, createService().analyzeFileName("Invoice March 2024"));
+    writeConfig(300, 5, 1);
+    replies.add(new Reply(200, COMPLETION, 1_000));
+    var service = createService();
+
+    long start = System.nanoTime();
+    assertEquals(FILE_NAME, service.analyzeFileName("Invoice April 2024"));
+    // The retry is only sent once the timed out call has returned and freed the only permit
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 1_000);
+    assertEquals(1, maxActiveRequests.get());
+    assertEquals(3, requests.get());
+  }
+
+  @Test
+  void openCircuitBreakerLeavesAnalysisIncomplete() throws IOException {
+    writeConfig(10_000, 2, 4);
+    fallback = new Reply(503, ERROR, 0);
+    var service = createService();
+
+    // Two failed attempts open the breaker, later requests are rejected without a call
+    assertThrows(LLMUnavailableException.class, () -> service.analyzeFileName("First document"));
+    assertEquals(2, requests.get());
+    assertThrows(LLMUnavailableException.class, () -> service.analyzeFileName("Second document"));
+    assertEquals(2, requests.get());
+
+    var configuration = new ConfigurationManager();
+    var metrics = new Metrics();
+    var analyzer =
+        new TextAnalyzer(
+            new NamingService(
+                service,
+                new NamingCache(configuration, metrics),
+                new NamingRuleEngine(configuration),
+                metrics),
+            configuration);
+    var file = Files.writeString(directory.resolve("scan.txt"), "Invoice March 2024");
+    var result = assertInstanceOf(AnalysisIncomplete.class, analyzer.analyze(file.toFile()));
+    assertTrue(result.retryable());
+    assertEquals(2, requests.get());
+  }
+
+  private void writeConfig(long timeoutMs, int circuitFailureThreshold, int maxInFlight)
+      throws IOException {
+    var configDir = Files.createDirectories(directory.resolve(".config").resolve("drop-catcher"));
+    Files.writeString(
+        configDir.resolve("application.properties"),
+        String.join(
+            "\n",
+            ConfigurationManager.LLM_REQUESTS_PER_SECOND + "=1000",
+            ConfigurationManager.LLM_RETRY_BASE_DELAY_MS + "=10",
+            ConfigurationManager.LLM_MAX_ATTEMPTS + "=3",
+            ConfigurationManager.LLM_TIMEOUT_MS + "=" + timeoutMs,
+            ConfigurationManager.LLM_CIRCUIT_FAILURE_THRESHOLD + "=" + circuitFailureThreshold,
+            ConfigurationManager.LLM_MAX_IN_FLIGHT + "=" + maxInFlight,
+            ConfigurationManager.NAMING_CACHE_SIZE + "=0",
+            ""));
+  }
+
+  private OAIService createService() {
+    var client =
+        OpenAIOkHttpClientAsync.builder()
+            .apiKey("test")
+            .baseUrl("http://127.0.0.1:" + stub.getAddress().getPort())
+            .maxRetries(0)
+            .build();
+    return new OAIService(client, new ConfigurationManager(), new Metrics());
+  }
+
+  private void reply(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      requests.incrementAndGet();
+      maxActiveRequests.accumulateAndGet(activeRequests.incrementAndGet(), Math::max);
+      exchange.getRequestBody().readAllBytes();
+      var scripted = replies.poll();
+      var reply = scripted != null ? scripted : fallback;
+      try {
+        if (reply.delayMs() > 0) {
+          Thread.sleep(reply.delayMs());
+        }
+      } catch (InterruptedException e) {
+        return;
+      } finally {
+        activeRequests.decrementAndGet();
+      }
+      var body = reply.body().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(reply.status(), body.length);
+      exchange.getResponseBody().write(body);
+    }
+  }
+}
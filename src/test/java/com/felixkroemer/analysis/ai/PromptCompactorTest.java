@@ -0,0 +1,60 @@
+package com.felixkroemer.analysis.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PromptCompactorTest {
+
+  @Test
+  void estimatesLettersDigitsAndPunctuationSeparately() {
+    // "Invoice" is two tokens, "2024" two, the comma one
+    assertEquals(5, PromptCompactor.estimateTokens("Invoice 2024,"));
+    assertEquals(0, PromptCompactor.estimateTokens("   "));
+    assertEquals(3, PromptCompactor.estimateTokens("1234567"));
+  }
+
+  @Test
+  void dropsRepeatedLinesAndBoilerplateWithinTheBudget() {
+    var text =
+        """
+        Invoice   ACME  Office Supplies
+        Page 1 of 2
+        IBAN DE02 1203 0000 0000 2020 51
+        Thank you for your order.
+        Thank you for your order.
+        www.acme.example
+        """;
+
+    assertEquals(
+        "Invoice ACME Office Supplies\nThank you for your order.",
+        new PromptCompactor(1000).compact(text));
+  }
+
+  @Test
+  void keepsDateAndTitleLinesInDocumentOrderWhenOverBudget() {
+    var body = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      body.append("the delivery contains the items listed on the attached sheet number ")
+          .append(i)
+          .append(".\n");
+    }
+    var text = body + "Invoice ACME Office Supplies\nDate: 15.03.2024\n" + body;
+    var compactor = new PromptCompactor(20);
+
+    var compacted = compactor.compact(text);
+
+    assertTrue(PromptCompactor.estimateTokens(compacted) <= 20, compacted);
+    assertEquals("Invoice ACME Office Supplies\nDate: 15.03.2024", compacted);
+  }
+
+  @Test
+  void truncatesASingleLineThatExceedsTheBudget() {
+    var line = "word ".repeat(100).strip();
+
+    var compacted = new PromptCompactor(10).compact(line);
+
+    assertEquals("word ".repeat(10).strip(), compacted);
+  }
+}
@@ -0,0 +1,106 @@
+package com.felixkroemer.analysis.naming;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.metrics.Metrics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Runs the cache with a temporary user config directory that also holds the cache file. */
+class NamingCacheTest {
+
+  /** Fingerprints with the sign bit set need all 16 hex digits when saved. */
+  private static final long HIGH_BIT = 0xF00D_0000_0000_BEEFL;
+
+  private static final long ALL_BITS = -1L;
+
+  @TempDir Path directory;
+
+  private String userHome;
+
+  @BeforeEach
+  void setUp() {
+    userHome = System.getProperty("user.home");
+    System.setProperty("user.home", directory.toString());
+  }
+
+  @AfterEach
+  void tearDown() {
+    System.setProperty("user.home", userHome);
+  }
+
+  @Test
+  void savedTemplatesWithHighBitFingerprintsSurviveARestart() throws IOException {
+    writeConfig(10);
+    var cache = createCache();
+    cache.put(HIGH_BIT, "Invoice_{date}_ACME");
+    cache.put(ALL_BITS, "Payslip_{date}");
+    cache.save();
+
+    var restarted = createCache();
+    assertEquals(2, restarted.size());
+    assertEquals(Optional.of("Invoice_{date}_ACME"), restarted.find(HIGH_BIT));
+    assertEquals(Optional.of("Payslip_{date}"), restarted.find(ALL_BITS));
+  }
+
+  @Test
+  void findsTheMostSimilarTemplateAboveTheThreshold() throws IOException {
+    writeConfig(10);
+    var cache = createCache();
+    cache.put(0L, "Letter_{date}");
+    cache.put(0xFL, "Invoice_{date}");
+
+    // One bit away from the second entry, three bits away from the first
+    assertEquals(Optional.of("Invoice_{date}"), cache.find(0x7L));
+    // 32 differing bits are a similarity of 0.5
+    assertTrue(cache.find(0xFFFF_FFFF_0000_0000L).isEmpty());
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedTemplate() throws IOException {
+    writeConfig(2);
+    var cache = createCache();
+    cache.put(0L, "Letter_{date}");
+    cache.put(ALL_BITS, "Invoice_{date}");
+    cache.find(0L);
+    cache.put(0xFFFF_FFFF_0000_0000L, "Contract_{date}");
+
+    assertEquals(2, cache.size());
+    assertEquals(Optional.of("Letter_{date}"), cache.find(0L));
+    assertTrue(cache.find(ALL_BITS).isEmpty());
+  }
+
+  @Test
+  void aSizeOfZeroDisablesTheCache() throws IOException {
+    writeConfig(0);
+    var cache = createCache();
+    cache.put(HIGH_BIT, "Invoice_{date}");
+
+    assertEquals(0, cache.size());
+    assertTrue(cache.find(HIGH_BIT).isEmpty());
+  }
+
+  private void writeConfig(int size) throws IOException {
+    var configDir = Files.createDirectories(directory.resolve(".config").resolve("drop-catcher"));
+    Files.writeString(
+        configDir.resolve("application.properties"),
+        ConfigurationManager.NAMING_CACHE_SIZE
+            + "="
+            + size
+            + "\n"
+            + ConfigurationManager.NAMING_CACHE_SIMILARITY
+            + "=0.9\n");
+  }
+
+  private static NamingCache createCache() {
+    return new NamingCache(new ConfigurationManager(), new Metrics());
+  }
+}
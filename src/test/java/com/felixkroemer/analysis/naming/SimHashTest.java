@@ -0,0 +1,50 @@
+package com.felixkroemer.analysis.naming;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SimHashTest {
+
+  private static final String INVOICE =
+      "Invoice 2024-0117 from ACME Office Supplies, customer number 4711, due on 2024-02-15."
+          + " Total amount 119.00 EUR including value added tax.";
+
+  @Test
+  void ignoresDigitsSoDatesAndAmountsDoNotChangeTheFingerprint() {
+    var next = INVOICE.replace("2024-0117", "2024-0342").replace("119.00", "87.50");
+
+    assertEquals(fingerprint(INVOICE), fingerprint(next));
+  }
+
+  @Test
+  void similarTextsAreCloserThanUnrelatedOnes() {
+    var similar = INVOICE.replace("Office Supplies", "Paper Supplies");
+    var unrelated =
+        "Dear tenant, the heating in the building will be serviced next week. Please make sure"
+            + " the radiators in your apartment are accessible.";
+
+    double toSimilar = SimHash.similarity(fingerprint(INVOICE), fingerprint(similar));
+    double toUnrelated = SimHash.similarity(fingerprint(INVOICE), fingerprint(unrelated));
+    assertTrue(toSimilar > toUnrelated, toSimilar + " <= " + toUnrelated);
+  }
+
+  @Test
+  void needsTheMinimumNumberOfWords() {
+    assertTrue(SimHash.fingerprint("Invoice ACME", 3).isEmpty());
+    assertTrue(SimHash.fingerprint("Invoice ACME 2024 42", 3).isEmpty());
+    assertTrue(SimHash.fingerprint("Invoice from ACME", 3).isPresent());
+  }
+
+  @Test
+  void similarityIsTheShareOfEqualBits() {
+    assertEquals(1.0, SimHash.similarity(0x8000_0000_0000_0001L, 0x8000_0000_0000_0001L));
+    assertEquals(0.0, SimHash.similarity(0L, -1L));
+    assertEquals(0.5, SimHash.similarity(0L, 0xFFFF_FFFF_0000_0000L));
+  }
+
+  private static long fingerprint(String text) {
+    return SimHash.fingerprint(text, 3).orElseThrow();
+  }
+}
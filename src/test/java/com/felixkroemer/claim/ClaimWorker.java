@@ -0,0 +1,63 @@
+package com.felixkroemer.claim;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.file.FileJob;
+import com.felixkroemer.file.error.FileClaimLostException;
+import com.felixkroemer.metrics.Metrics;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * One instance in {@link FileClaimerProcessTest}, run in its own JVM. Waits for the start file,
+ * tries to claim every file in the input directory and prints the ones it won.
+ *
+ * <p>Arguments: input directory, output directory, config directory, instance id, start file and
+ * {@code hold} to keep running with a live heartbeat after claiming.
+ */
+public class ClaimWorker {
+
+  static final String CLAIMED = "CLAIMED ";
+  static final String DONE = "DONE";
+
+  public static void main(String[] args) throws Exception {
+    var inputDir = Path.of(args[0]);
+    var startFile = Path.of(args[4]);
+    boolean hold = args.length > 5 && args[5].equals("hold");
+    var configuration =
+        FileClaimerProcessTest.configure(inputDir, Path.of(args[1]), Path.of(args[2]), args[3]);
+    var claimer = new FileClaimer(configuration, new Metrics());
+    claimer.start();
+    var rule = configuration.getWatchRules().getFirst();
+
+    while (!Files.exists(startFile)) {
+      Thread.sleep(10);
+    }
+    var files = new ArrayList<Path>();
+    try (var paths = Files.list(inputDir)) {
+      paths
+          .filter(Files::isRegularFile)
+          .filter(path -> !path.getFileName().toString().startsWith("."))
+          .forEach(files::add);
+    }
+    // Every instance walks the files in its own order, so they collide all over the directory
+    Collections.shuffle(files);
+    for (var file : files) {
+      try {
+        claimer.claim(new FileJob(file, rule));
+        System.out.println(CLAIMED + file.getFileName());
+      } catch (FileClaimLostException e) {
+        // Another instance won this file
+      }
+    }
+    System.out.println(DONE);
+    System.out.flush();
+    if (hold) {
+      Thread.sleep(Long.MAX_VALUE);
+    }
+    claimer.stop();
+  }
+
+  private ClaimWorker() {}
+}
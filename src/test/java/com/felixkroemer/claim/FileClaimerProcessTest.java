@@ -0,0 +1,214 @@
+package com.felixkroemer.claim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.file.FileJob;
+import com.felixkroemer.metrics.Metrics;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Starts several JVMs against one temp input directory, like instances sharing a network folder,
+ * and checks that every file is claimed exactly once and that the claims of a killed instance are
+ * released once its lease expires. A restart is run in process.
+ */
+class FileClaimerProcessTest {
+
+  private static final int FILES = 200;
+  private static final int INSTANCES = 4;
+  private static final String CONFIG_DIR_PROPERTY = "dropcatcher.configDir";
+  private static final List<String> PROPERTIES =
+      List.of(
+          CONFIG_DIR_PROPERTY,
+          ConfigurationManager.INPUT_DIRECTORY,
+          ConfigurationManager.OUTPUT_DIRECTORY,
+          ConfigurationManager.CLAIMING_ENABLED,
+          ConfigurationManager.INSTANCE_ID,
+          ConfigurationManager.CLAIM_HEARTBEAT_MS,
+          ConfigurationManager.CLAIM_LEASE_MS);
+
+  @TempDir Path directory;
+
+  private final List<Process> processes = new ArrayList<>();
+
+  @AfterEach
+  void tearDown() {
+    processes.forEach(Process::destroyForcibly);
+    PROPERTIES.forEach(System::clearProperty);
+  }
+
+  @Test
+  void everyFileIsClaimedByExactlyOneInstance() throws Exception {
+    var inputDir = createInputFiles();
+    var startFile = directory.resolve("start");
+    var workers = new HashMap<String, Process>();
+    for (int i = 0; i < INSTANCES; i++) {
+      workers.put("instance-" + i, startWorker(inputDir, "instance-" + i, startFile, false));
+    }
+    Files.createFile(startFile);
+
+    var claimedBy = new HashMap<String, String>();
+    for (var worker : workers.entrySet()) {
+      for (var name : readClaims(worker.getValue())) {
+        assertNull(claimedBy.put(name, worker.getKey()), name + " was claimed twice");
+      }
+      assertTrue(worker.getValue().waitFor(30, TimeUnit.SECONDS));
+      assertEquals(0, worker.getValue().exitValue());
+    }
+
+    assertEquals(FILES, claimedBy.size());
+    assertEquals(Set.of(), listInputFiles(inputDir));
+    for (var claim : claimedBy.entrySet()) {
+      var claimRoot = inputDir.resolve(".claims").resolve(claim.getValue());
+      assertTrue(findFile(claimRoot, claim.getKey()), claim.getKey() + " is not in " + claimRoot);
+    }
+  }
+
+  @Test
+  void claimsOfAKilledInstanceAreReleased() throws Exception {
+    var inputDir = createInputFiles();
+    var startFile = directory.resolve("start");
+    var worker = startWorker(inputDir, "crashing", startFile, true);
+    Files.createFile(startFile);
+    assertEquals(FILES, readClaims(worker).size());
+    assertEquals(Set.of(), listInputFiles(inputDir));
+
+    worker.destroyForcibly().waitFor();
+    System.setProperty(ConfigurationManager.CLAIM_LEASE_MS, "500");
+    var configuration =
+        configure(inputDir, directory.resolve("output"), directory.resolve("survivor"), "survivor");
+    var claimer = new FileClaimer(configuration, new Metrics());
+    claimer.start();
+    try {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+      while (listInputFiles(inputDir).size() < FILES) {
+        if (System.nanoTime() > deadline) {
+          fail("Only " + listInputFiles(inputDir).size() + " of " + FILES + " files were released");
+        }
+        Thread.sleep(100);
+      }
+    } finally {
+      claimer.stop();
+    }
+  }
+
+  @Test
+  void aRestartedInstanceReleasesOnlyClaimsWithoutAResumedRow() throws Exception {
+    var inputDir = Files.createDirectories(directory.resolve("input"));
+    var resumed = Files.writeString(inputDir.resolve("resumed.pdf"), "resumed");
+    var orphaned = Files.writeString(inputDir.resolve("orphaned.pdf"), "orphaned");
+    var configuration =
+        configure(inputDir, directory.resolve("output"), directory.resolve("restarted"), "restarted");
+    var rule = configuration.getWatchRules().getFirst();
+    var resumedJob = new FileJob(resumed, rule);
+    var beforeRestart = new FileClaimer(configuration, new Metrics());
+    beforeRestart.claim(resumedJob);
+    beforeRestart.claim(new FileJob(orphaned, rule));
+
+    var claimer = new FileClaimer(configuration, new Metrics());
+    claimer.start();
+    try {
+      assertEquals(Set.of(), listInputFiles(inputDir));
+      claimer.releaseLeftovers(Set.of(resumedJob.getId()));
+      assertEquals(Set.of("orphaned.pdf"), listInputFiles(inputDir));
+      assertTrue(Files.exists(resumedJob.getClaimedPath()));
+    } finally {
+      claimer.stop();
+    }
+  }
+
+  /** Configures claiming for one instance through system properties, as the worker JVMs do. */
+  static ConfigurationManager configure(
+      Path inputDir, Path outputDir, Path configDir, String instanceId) {
+    System.setProperty(CONFIG_DIR_PROPERTY, configDir.toString());
+    System.setProperty(ConfigurationManager.INPUT_DIRECTORY, inputDir.toString());
+    System.setProperty(ConfigurationManager.OUTPUT_DIRECTORY, outputDir.toString());
+    System.setProperty(ConfigurationManager.CLAIMING_ENABLED, "true");
+    System.setProperty(ConfigurationManager.INSTANCE_ID, instanceId);
+    System.setProperty(ConfigurationManager.CLAIM_HEARTBEAT_MS, "100");
+    return new ConfigurationManager();
+  }
+
+  private Path createInputFiles() throws IOException {
+    var inputDir = Files.createDirectories(directory.resolve("input"));
+    for (int i = 0; i < FILES; i++) {
+      Files.writeString(inputDir.resolve("scan_" + i + ".pdf"), "content " + i);
+    }
+    return inputDir;
+  }
+
+  private Process startWorker(Path inputDir, String instanceId, Path startFile, boolean hold)
+      throws IOException {
+    var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    var command =
+        new ArrayList<>(
+            List.of(
+                java,
+                "-cp",
+                System.getProperty("java.class.path"),
+                ClaimWorker.class.getName(),
+                inputDir.toString(),
+                directory.resolve("output").toString(),
+                directory.resolve(instanceId).toString(),
+                instanceId,
+                startFile.toString()));
+    if (hold) {
+      command.add("hold");
+    }
+    var process =
+        new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    processes.add(process);
+    return process;
+  }
+
+  /** Reads the files a worker claimed, up to its done marker. Log lines are skipped. */
+  private static List<String> readClaims(Process worker) throws IOException {
+    var claims = new ArrayList<String>();
+    var reader =
+        new BufferedReader(new InputStreamReader(worker.getInputStream(), StandardCharsets.UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.equals(ClaimWorker.DONE)) {
+        return claims;
+      }
+      if (line.startsWith(ClaimWorker.CLAIMED)) {
+        claims.add(line.substring(ClaimWorker.CLAIMED.length()));
+      }
+    }
+    return fail("Worker exited before claiming all files");
+  }
+
+  private static Set<String> listInputFiles(Path inputDir) throws IOException {
+    try (Stream<Path> paths = Files.list(inputDir)) {
+      return paths
+          .filter(Files::isRegularFile)
+          .map(path -> path.getFileName().toString())
+          .collect(Collectors.toSet());
+    }
+  }
+
+  private static boolean findFile(Path claimRoot, String name) throws IOException {
+    try (Stream<Path> paths = Files.walk(claimRoot)) {
+      return paths.anyMatch(path -> path.getFileName().toString().equals(name));
+    }
+  }
+}
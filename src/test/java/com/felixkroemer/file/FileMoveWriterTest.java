@@ -0,0 +1,107 @@
+package com.felixkroemer.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.file.error.FileMoveStatus;
+import com.felixkroemer.metrics.Counter;
+import com.felixkroemer.metrics.Metrics;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Runs the writer without a database, writes stay pending and a forced flush fails. */
+class FileMoveWriterTest {
+
+  private static final String CONFIG_DIR_PROPERTY = "dropcatcher.configDir";
+  private static final List<String> PROPERTIES =
+      List.of(
+          CONFIG_DIR_PROPERTY,
+          ConfigurationManager.DB_BATCH_SIZE,
+          ConfigurationManager.DB_FLUSH_INTERVAL_MS);
+  private static final String HASH = "a".repeat(64);
+
+  @TempDir Path directory;
+
+  private Metrics metrics;
+  private FileMoveWriter writer;
+
+  @BeforeEach
+  void setUp() {
+    System.setProperty(CONFIG_DIR_PROPERTY, directory.toString());
+    System.setProperty(ConfigurationManager.DB_BATCH_SIZE, "100");
+    System.setProperty(ConfigurationManager.DB_FLUSH_INTERVAL_MS, "3600000");
+    metrics = new Metrics();
+    writer =
+        new FileMoveWriter(
+            new ConfigurationManager(),
+            () -> {
+              throw new IllegalStateException("No database in this test");
+            },
+            metrics);
+  }
+
+  @AfterEach
+  void tearDown() {
+    PROPERTIES.forEach(System::clearProperty);
+  }
+
+  @Test
+  void findsTheNameOfAPendingSucceededMove() {
+    var entity = move(HASH, FileMoveStatus.PENDING, null);
+    writer.insert(entity);
+    assertTrue(writer.findPendingAnalyzedName(HASH).isEmpty());
+
+    entity.setStatus(FileMoveStatus.SUCCEEDED);
+    entity.setAnalyzedName("Invoice_2024_03");
+    entity.setMoveCompletedAt(LocalDateTime.now());
+    writer.update(entity);
+    assertEquals(Optional.of("Invoice_2024_03"), writer.findPendingAnalyzedName(HASH));
+    assertTrue(writer.findPendingAnalyzedName("b".repeat(64)).isEmpty());
+  }
+
+  @Test
+  void prefersTheLatestPendingMove() {
+    var earlier = move(HASH, FileMoveStatus.SUCCEEDED, "Invoice_2024_03");
+    earlier.setMoveCompletedAt(LocalDateTime.now().minusMinutes(1));
+    var later = move(HASH, FileMoveStatus.SUCCEEDED, "Invoice_March_2024");
+    later.setMoveCompletedAt(LocalDateTime.now());
+    writer.insert(later);
+    writer.insert(earlier);
+
+    assertEquals(Optional.of("Invoice_March_2024"), writer.findPendingAnalyzedName(HASH));
+  }
+
+  @Test
+  void countsOnlyRowsThatWereWritten() {
+    writer.insert(move(HASH, FileMoveStatus.PENDING, null));
+    writer.insert(move(HASH, FileMoveStatus.PENDING, null));
+
+    writer.flush();
+    assertEquals(0, writer.getPendingCount());
+    var rowsWritten =
+        metrics.getMetrics().stream()
+            .filter(metric -> metric.getName().equals("dropcatcher_db_rows_written_total"))
+            .map(Counter.class::cast)
+            .findFirst()
+            .orElseThrow();
+    assertEquals(0, rowsWritten.getCount());
+  }
+
+  private static FileMoveEntity move(String fileHash, FileMoveStatus status, String analyzedName) {
+    return FileMoveEntity.builder()
+        .createdAt(LocalDateTime.now())
+        .sourceFileName("scan.pdf")
+        .sourceDirectory("/input")
+        .fileHash(fileHash)
+        .status(status)
+        .analyzedName(analyzedName)
+        .build();
+  }
+}
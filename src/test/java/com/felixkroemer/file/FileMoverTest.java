@@ -0,0 +1,72 @@
+package com.felixkroemer.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileMoverTest {
+
+  @TempDir Path directory;
+
+  private final FileMover fileMover = new FileMover();
+
+  @Test
+  void movesTheFileUnderItsNewNameAndCreatesTheTargetDirectory() throws IOException {
+    var source = Files.writeString(directory.resolve("scan.pdf"), "invoice");
+    var targetDir = directory.resolve("output").resolve("invoices");
+
+    var target = fileMover.move(source, targetDir, "Invoice_2024_03.pdf");
+
+    assertEquals(targetDir.resolve("Invoice_2024_03.pdf"), target);
+    assertEquals("invoice", Files.readString(target));
+    assertFalse(Files.exists(source));
+  }
+
+  @Test
+  void appendsASuffixInsteadOfReplacingAnExistingFile() throws IOException {
+    var targetDir = Files.createDirectories(directory.resolve("output"));
+    Files.writeString(targetDir.resolve("Invoice.pdf"), "first");
+    Files.writeString(targetDir.resolve("Invoice_1.pdf"), "second");
+    var source = Files.writeString(directory.resolve("scan.pdf"), "third");
+
+    var target = fileMover.move(source, targetDir, "Invoice.pdf");
+
+    assertEquals(targetDir.resolve("Invoice_2.pdf"), target);
+    assertEquals("first", Files.readString(targetDir.resolve("Invoice.pdf")));
+    assertEquals("second", Files.readString(targetDir.resolve("Invoice_1.pdf")));
+    assertEquals("third", Files.readString(target));
+  }
+
+  @Test
+  void putsTheSuffixBeforeTheExtension() {
+    assertEquals("Invoice.pdf", FileMover.withSuffix("Invoice.pdf", 0));
+    assertEquals("Invoice_3.pdf", FileMover.withSuffix("Invoice.pdf", 3));
+    assertEquals("Invoice.tar_1.gz", FileMover.withSuffix("Invoice.tar.gz", 1));
+    assertEquals("README_1", FileMover.withSuffix("README", 1));
+    assertEquals(".hidden_1", FileMover.withSuffix(".hidden", 1));
+  }
+
+  @Test
+  void copiesAcrossFileSystemsThroughATempFileThatIsNeverLeftBehind() throws IOException {
+    var targetDir = Files.createDirectories(directory.resolve("output"));
+    Files.writeString(targetDir.resolve("Invoice.pdf"), "existing");
+    var content = "x".repeat(1 << 20);
+    var source = Files.writeString(directory.resolve("scan.pdf"), content);
+
+    var target = FileMover.copyAndPublish(source, targetDir, "Invoice.pdf");
+
+    assertEquals(targetDir.resolve("Invoice_1.pdf"), target);
+    assertEquals(content, Files.readString(target));
+    assertEquals("existing", Files.readString(targetDir.resolve("Invoice.pdf")));
+    assertFalse(Files.exists(source));
+    try (Stream<Path> files = Files.list(targetDir)) {
+      assertEquals(2, files.count());
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.felixkroemer.file;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.felixkroemer.config.ConfigurationManager;
+import com.felixkroemer.file.error.FileHandlingFailedException;
+import com.felixkroemer.file.error.StabilityChecksExceededException;
+import com.felixkroemer.metrics.Metrics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Runs the tracker with a 200ms quiet period and a 1s timeout from a temporary user config. */
+class StabilityTrackerTest {
+
+  private static final long QUIET_PERIOD_MS = 200;
+
+  @TempDir Path directory;
+
+  private String userHome;
+  private StabilityTracker tracker;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    userHome = System.getProperty("user.home");
+    System.setProperty("user.home", directory.toString());
+    var configDir = Files.createDirectories(directory.resolve(".config").resolve("drop-catcher"));
+    Files.writeString(
+        configDir.resolve("application.properties"),
+        "stabilityQuietPeriodMs=" + QUIET_PERIOD_MS + "\nstabilityTimeoutMs=1000\n");
+    tracker = new StabilityTracker(new ConfigurationManager(), new Metrics());
+  }
+
+  @AfterEach
+  void tearDown() {
+    System.setProperty("user.home", userHome);
+  }
+
+  @Test
+  void completesOnceTheFileWasQuietForTheQuietPeriod() throws Exception {
+    var file = Files.writeString(directory.resolve("scan.pdf"), "content");
+
+    long start = System.nanoTime();
+    tracker.awaitStable(file).get(2, TimeUnit.SECONDS);
+    assertTrue(elapsedMs(start) >= QUIET_PERIOD_MS);
+  }
+
+  @Test
+  void watchEventsExtendTheQuietPeriod() throws Exception {
+    var file = Files.writeString(directory.resolve("scan.pdf"), "content");
+
+    long start = System.nanoTime();
+    var stable = tracker.awaitStable(file);
+    for (int i = 0; i < 6; i++) {
+      Thread.sleep(QUIET_PERIOD_MS / 2);
+      tracker.touch(file);
+      assertFalse(stable.isDone());
+    }
+    stable.get(2, TimeUnit.SECONDS);
+    assertTrue(elapsedMs(start) >= 4 * QUIET_PERIOD_MS);
+  }
+
+  @Test
+  void aSizeChangeWithoutEventRestartsTheQuietPeriod() throws Exception {
+    var file = Files.writeString(directory.resolve("scan.pdf"), "content");
+
+    long start = System.nanoTime();
+    var stable = tracker.awaitStable(file);
+    Thread.sleep(QUIET_PERIOD_MS / 2);
+    Files.writeString(file, " and more", StandardOpenOption.APPEND);
+    stable.get(2, TimeUnit.SECONDS);
+    assertTrue(elapsedMs(start) >= 2 * QUIET_PERIOD_MS);
+  }
+
+  @Test
+  void failsAFileThatKeepsChangingPastTheTimeout() throws Exception {
+    var file = Files.writeString(directory.resolve("scan.pdf"), "content");
+
+    var stable = tracker.awaitStable(file);
+    while (!stable.isDone()) {
+      tracker.touch(file);
+      Thread.sleep(QUIET_PERIOD_MS / 4);
+    }
+    var e = assertThrows(ExecutionException.class, stable::get);
+    assertInstanceOf(StabilityChecksExceededException.class, e.getCause());
+  }
+
+  @Test
+  void failsAMissingFile() {
+    var stable = tracker.awaitStable(directory.resolve("missing.pdf"));
+
+    var e = assertThrows(ExecutionException.class, () -> stable.get(2, TimeUnit.SECONDS));
+    assertInstanceOf(FileHandlingFailedException.class, e.getCause());
+  }
+
+  private static long elapsedMs(long startNanos) {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+  }
+}